@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.configuration.supplier.AgroalPropertiesReader;
+import io.apicurio.common.apps.logging.LoggerProducer;
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.BaseSqlStorageComponent;
+import io.apicurio.common.apps.storage.sql.jdbi.BenchmarkHandleFactory;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleFactory;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.IntegerMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.LongMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.MapperLoader;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.MapperLoaderHolder;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.StringMapper;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An in-memory H2 database behind an Agroal pool, initialized by {@link BaseSqlStorageComponent}
+ * from {@code benchmark-ddl}, with {@value #ITEMS} rows in the {@code items} table.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    public static final int ITEMS = 10_000;
+
+    public static final String SEQUENCE = "benchmark";
+
+    private static final List<RowMapper<?>> MAPPERS = List.of(new LongMapper(), new IntegerMapper(), new StringMapper(), new Item.Mapper());
+
+    private final AgroalDataSource dataSource;
+
+    private final BenchmarkSqlStatements sqlStatements = new BenchmarkSqlStatements();
+
+    private final HandleFactory handles;
+
+    private final BaseSqlStorageComponent storage = new BaseSqlStorageComponent();
+
+    /**
+     * @param name                  name of the in-memory database
+     * @param maxConnections        maximum size of the connection pool
+     * @param atomicSequenceIncrement whether {@link BaseSqlStorageComponent#nextSequenceValue(String)} uses
+     *                              the atomic increment statement, or the compare-and-set workaround
+     */
+    public BenchmarkDatabase(String name, int maxConnections, boolean atomicSequenceIncrement) throws SQLException, StorageException {
+        var properties = new HashMap<String, String>();
+        properties.put(AgroalPropertiesReader.JDBC_URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        properties.put(AgroalPropertiesReader.MIN_SIZE, String.valueOf(maxConnections));
+        properties.put(AgroalPropertiesReader.MAX_SIZE, String.valueOf(maxConnections));
+        dataSource = AgroalDataSource.from(new AgroalPropertiesReader().readProperties(properties).get());
+
+        MapperLoaderHolder.getInstance().setMapperLoader(new MapperLoader() {
+            @Override
+            public List<RowMapper<?>> getMappers() {
+                return MAPPERS;
+            }
+        });
+
+        handles = new BenchmarkHandleFactory(dataSource, sqlStatements, 32);
+        storage.start(new LoggerProducer(), handles, BaseSqlStorageComponent.Configuration.builder()
+                .supportsAtomicSequenceIncrement(atomicSequenceIncrement)
+                .sqlStatements(sqlStatements)
+                .ddlDirRootPath("benchmark-ddl")
+                .build());
+
+        long created = Instant.now().toEpochMilli();
+        handles.withHandle(handle -> {
+            var insert = handle.createUpdate("INSERT INTO items (id, revision, name, owner, created) VALUES (?, ?, ?, ?, ?)");
+            for (long id = 0; id < ITEMS; id++) {
+                insert.bind(0, id)
+                        .bind(1, 0)
+                        .bind(2, "item-" + id)
+                        .bind(3, id % 2 == 0 ? "owner-" + (id % 100) : null)
+                        .bind(4, Instant.ofEpochMilli(created + id))
+                        .add();
+            }
+            insert.executeBatch();
+            return handle.createUpdate(sqlStatements.insertSequenceValue())
+                    .bind(0, BaseSqlStorageComponent.DEFAULT_TENANT_ID)
+                    .bind(1, SEQUENCE)
+                    .bind(2, 0L)
+                    .execute();
+        });
+    }
+
+    public HandleFactory getHandles() {
+        return handles;
+    }
+
+    public BaseSqlStorageComponent getStorage() {
+        return storage;
+    }
+
+    /**
+     * Drops the database, so that the next trial in the same JVM starts from scratch.
+     */
+    @Override
+    public void close() throws StorageException {
+        handles.withHandle(handle -> {
+            handle.createUpdate("DROP ALL OBJECTS").executeNoUpdate();
+            return null;
+        });
+        dataSource.close();
+    }
+}
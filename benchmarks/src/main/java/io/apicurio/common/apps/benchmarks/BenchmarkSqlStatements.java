@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.AbstractH2BaseSqlStatements;
+import io.apicurio.common.apps.storage.sql.jdbi.Handle;
+import io.apicurio.common.apps.storage.sql.jdbi.query.Update;
+import io.apicurio.common.apps.storage.sql.jdbi.query.UpdateImpl;
+
+/**
+ * H2 statements for the tables created by {@code benchmark-ddl/h2.ddl}.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class BenchmarkSqlStatements extends AbstractH2BaseSqlStatements {
+
+    @Override
+    public String dbType() {
+        return "h2";
+    }
+
+    @Override
+    public boolean isDatabaseInitialized(Handle handle) throws StorageException {
+        int count = handle.createQuery("SELECT COUNT(*) AS count FROM information_schema.tables WHERE table_name = 'STORAGE_PROPERTIES'")
+                .mapTo(Integer.class)
+                .one();
+        return count > 0;
+    }
+
+    @Override
+    public String getStorageProperty() {
+        return "SELECT p.pvalue FROM storage_properties p WHERE p.tenantId = 'default' AND p.pkey = ?";
+    }
+
+    @Override
+    public Update setStorageProperty(String key, String value) {
+        return new UpdateImpl("MERGE INTO storage_properties (tenantId, pkey, pvalue) KEY (tenantId, pkey) VALUES ('default', ?, ?)")
+                .bind(0, key)
+                .bind(1, value);
+    }
+
+    /**
+     * H2 returns the incremented value using a data change delta table. The sequence row must already exist.
+     */
+    @Override
+    public String getNextSequenceValue() {
+        return "SELECT s.seq_value FROM FINAL TABLE (UPDATE sequences SET seq_value = seq_value + 1 WHERE tenantId = ? AND name = ?) s";
+    }
+
+    @Override
+    public String getSequenceValue() {
+        return "SELECT s.seq_value FROM sequences s WHERE s.tenantId = ? AND s.name = ?";
+    }
+
+    @Override
+    public String casSequenceValue() {
+        return "UPDATE sequences SET seq_value = ? WHERE tenantId = ? AND name = ? AND seq_value = ?";
+    }
+
+    @Override
+    public String insertSequenceValue() {
+        return "INSERT INTO sequences (tenantId, name, seq_value) VALUES (?, ?, ?)";
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A row of the {@code items} table.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class Item {
+
+    public static final String COLUMNS = "i.id, i.revision, i.name, i.owner, i.created";
+
+    private final long id;
+    private final int revision;
+    private final String name;
+    private final String owner;
+    private final long created;
+
+    public Item(long id, int revision, String name, String owner, long created) {
+        this.id = id;
+        this.revision = revision;
+        this.name = name;
+        this.owner = owner;
+        this.created = created;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public static class Mapper implements RowMapper<Item> {
+
+        @Override
+        public boolean supports(Class<?> klass) {
+            return Item.class.equals(klass);
+        }
+
+        @Override
+        public Item map(ResultSet rs) throws SQLException {
+            return new Item(rs.getLong("id"), rs.getInt("revision"), rs.getString("name"), rs.getString("owner"),
+                    rs.getTimestamp("created").getTime());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleSettings;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.StringMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of binding parameters of single-row statements, run with {@code -prof gc} to see the allocations per query.
+ * The statement cache is enabled, so that binding and mapping are not hidden behind statement preparation.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterBindingBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private static final StringMapper STRING_MAPPER = new StringMapper();
+
+    private Connection connection;
+
+    private HandleImpl handle;
+
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, StorageException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:parameter-binding");
+        handle = new HandleImpl(connection, HandleSettings.builder().statementCacheSize(32).build());
+        handle.createUpdate("CREATE TABLE item (id BIGINT PRIMARY KEY, revision INT NOT NULL, name VARCHAR(64) NOT NULL)")
+                .execute();
+        for (long i = 0; i < ROWS; i++) {
+            handle.createUpdate("INSERT INTO item (id, revision, name) VALUES (?, ?, ?)")
+                    .bind(0, i)
+                    .bind(1, 0)
+                    .bind(2, "item-" + i)
+                    .execute();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        handle.close();
+    }
+
+    @Benchmark
+    public String lookup() throws StorageException {
+        id = (id + 1) % ROWS;
+        return handle.createQuery("SELECT name FROM item WHERE id = ? AND revision = ?")
+                .bind(0, id)
+                .bind(1, 0)
+                .map(STRING_MAPPER)
+                .one();
+    }
+
+    @Benchmark
+    public int update() throws StorageException {
+        id = (id + 1) % ROWS;
+        return handle.createUpdate("UPDATE item SET revision = ? WHERE id = ? AND name = ?")
+                .bind(0, 0)
+                .bind(1, id)
+                .bind(2, "item")
+                .execute();
+    }
+}
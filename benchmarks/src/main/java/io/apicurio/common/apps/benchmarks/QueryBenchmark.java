@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Queries executed end to end, from {@link HandleFactory#withHandle} to the mapped result,
+ * including the pooled connection checkout.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final String SELECT_ALL = "SELECT " + Item.COLUMNS + " FROM items i ORDER BY i.id";
+
+    private BenchmarkDatabase database;
+
+    private HandleFactory handles;
+
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, StorageException {
+        database = new BenchmarkDatabase("query", 4, true);
+        handles = database.getHandles();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws StorageException {
+        database.close();
+    }
+
+    @Benchmark
+    public Item lookup() throws StorageException {
+        long lookupId = id = (id + 1) % BenchmarkDatabase.ITEMS;
+        return handles.withHandle(handle ->
+                handle.createQuery("SELECT " + Item.COLUMNS + " FROM items i WHERE i.id = ?")
+                        .bind(0, lookupId)
+                        .mapTo(Item.class)
+                        .one());
+    }
+
+    @Benchmark
+    public List<Item> list() throws StorageException {
+        return handles.withHandle(handle ->
+                handle.createQuery(SELECT_ALL)
+                        .mapTo(Item.class)
+                        .list());
+    }
+
+    @Benchmark
+    public long stream() throws StorageException {
+        return handles.withHandle(handle -> {
+            try (Stream<Item> items = handle.createQuery(SELECT_ALL)
+                    .mapTo(Item.class)
+                    .stream()) {
+                return items.mapToLong(Item::getRevision).sum();
+            }
+        });
+    }
+}
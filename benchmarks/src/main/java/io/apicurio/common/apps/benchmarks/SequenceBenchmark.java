@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.BaseSqlStorageComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BaseSqlStorageComponent#nextSequenceValue(String)} of a single sequence under contention,
+ * using the atomic increment statement, or the compare-and-set workaround for databases without one.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SequenceBenchmark {
+
+    @Param({"atomic", "cas"})
+    public String mode;
+
+    private BenchmarkDatabase database;
+
+    private BaseSqlStorageComponent storage;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, StorageException {
+        // A connection for every thread, so that threads wait for the database rather than for the pool
+        database = new BenchmarkDatabase("sequence", 32, "atomic".equals(mode));
+        storage = database.getStorage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws StorageException {
+        database.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long threads1() throws StorageException {
+        return storage.nextSequenceValue(BenchmarkDatabase.SEQUENCE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long threads8() throws StorageException {
+        return storage.nextSequenceValue(BenchmarkDatabase.SEQUENCE);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long threads32() throws StorageException {
+        return storage.nextSequenceValue(BenchmarkDatabase.SEQUENCE);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.benchmarks;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleFactory;
+import io.apicurio.common.apps.storage.sql.jdbi.query.Update;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates with many bound parameters, executed end to end from {@link HandleFactory#withHandle},
+ * one row per statement, and as a batch of {@value #BATCH_ROWS} rows.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+
+    private static final int BATCH_ROWS = 100;
+
+    private static final String UPDATE = "UPDATE items SET revision = ?, name = ?, owner = ?, created = ? " +
+            "WHERE id = ? AND revision >= ? AND name <> ? AND created > ?";
+
+    private static final Instant EPOCH = Instant.EPOCH;
+
+    private BenchmarkDatabase database;
+
+    private HandleFactory handles;
+
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, StorageException {
+        database = new BenchmarkDatabase("update", 4, true);
+        handles = database.getHandles();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws StorageException {
+        database.close();
+    }
+
+    @Benchmark
+    public int update() throws StorageException {
+        long updateId = id = (id + 1) % BenchmarkDatabase.ITEMS;
+        return handles.withHandle(handle -> bind(handle.createUpdate(UPDATE), updateId).execute());
+    }
+
+    @Benchmark
+    public int[] updateBatch() throws StorageException {
+        long first = id = (id + BATCH_ROWS) % BenchmarkDatabase.ITEMS;
+        return handles.withHandle(handle -> {
+            var update = handle.createUpdate(UPDATE);
+            for (long i = first; i < first + BATCH_ROWS; i++) {
+                bind(update, i % BenchmarkDatabase.ITEMS).add();
+            }
+            return update.executeBatch();
+        });
+    }
+
+    private static Update bind(Update update, long id) {
+        return update.bind(0, (int) (id % 7))
+                .bind(1, "item-" + id)
+                .bind(2, id % 3 == 0 ? null : "owner")
+                .bind(3, EPOCH.plusMillis(id))
+                .bind(4, id)
+                .bind(5, 0)
+                .bind(6, "none")
+                .bind(7, EPOCH);
+    }
+}
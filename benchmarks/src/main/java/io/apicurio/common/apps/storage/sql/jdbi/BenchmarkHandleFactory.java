@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.agroal.api.AgroalDataSource;
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.exceptions.StorageExceptionMapper;
+import io.apicurio.common.apps.storage.sql.BaseSqlStatements;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * {@link HandleFactoryImpl} wired by hand, without CDI, for use outside of a Quarkus application.
+ * There is never an active transaction, so every outermost {@code withHandle} call checks out a pooled connection.
+ * Metrics, the slow query log, the read-only datasource and the asynchronous executor are disabled.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class BenchmarkHandleFactory extends HandleFactoryImpl {
+
+    public BenchmarkHandleFactory(AgroalDataSource dataSource, BaseSqlStatements sqlStatements, int statementCacheSize) {
+        this.dataSource = dataSource;
+        this.sqlStatements = sqlStatements;
+        this.statementCacheSize = statementCacheSize;
+        this.transactionRegistry = new NoTransactionRegistry();
+        // Without transactions, nested calls share the connection in the same way as they would share the transaction
+        this.reuseThreadHandle = true;
+        this.log = LoggerFactory.getLogger(HandleFactoryImpl.class);
+        this.exceptionMapper = new StorageExceptionMapper() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <E extends RuntimeException> E map(StorageException original) {
+                return (E) new RuntimeException(original);
+            }
+        };
+        this.asyncThreads = Optional.empty();
+        this.readOnlyDataSourceName = Optional.empty();
+        this.retryPolicy = RetryPolicy.exponentialBackoff(5, 10, 1000, 5000);
+        this.queryResultCache = new QueryResultCache(10_000, transactionRegistry);
+        this.handleSettings = HandleSettings.builder()
+                .statementCacheSize(statementCacheSize)
+                .statementCacheStats(getStatementCacheStats())
+                .queryResultCache(queryResultCache)
+                .build();
+    }
+
+    private static class NoTransactionRegistry implements TransactionSynchronizationRegistry {
+
+        @Override
+        public Object getTransactionKey() {
+            return null;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization sync) {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return Status.STATUS_NO_TRANSACTION;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            throw new IllegalStateException("No transaction");
+        }
+    }
+}
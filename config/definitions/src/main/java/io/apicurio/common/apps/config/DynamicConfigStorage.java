@@ -17,6 +17,7 @@
 package io.apicurio.common.apps.config;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author eric.wittmann@gmail.com
@@ -33,6 +34,17 @@ public interface DynamicConfigStorage {
      */
     public DynamicConfigPropertyDto getConfigProperty(String propertyName);
 
+    /**
+     * Same as {@link #getConfigProperty(String)}, for callers that expect the property to be missing often.
+     * Implementations should not use exceptions to signal a missing property.
+     *
+     * @param propertyName the name of a property
+     * @return the property, or empty if not found
+     */
+    default Optional<DynamicConfigPropertyDto> findConfigProperty(String propertyName) {
+        return Optional.ofNullable(getConfigProperty(propertyName));
+    }
+
     /**
      * Sets a new value for a config property.
      *
@@ -74,7 +74,8 @@ public class DynamicConfigSource implements ConfigSource {
         if (configIndex.isPresent() && configIndex.get().hasProperty(pname)) {
             if (storage.isPresent()) {
                 if (storage.get().isReady()) { // TODO Merge the ifs after removing logging
-                    DynamicConfigPropertyDto dto = storage.get().getConfigProperty(pname);
+                    // Most dynamic properties are not set, avoid an exception for every lookup
+                    DynamicConfigPropertyDto dto = storage.get().findConfigProperty(pname).orElse(null);
                     if (dto != null) {
                         log.debug("Got dynamic configuration value {} for {} in thread {}", dto.getValue(), pname, Thread.currentThread().getName());
                         return dto.getValue();
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.config.impl.storage;
+
+/**
+ * Implements {@link #upsertConfigProperty()} for PostgreSQL, for a table with the columns
+ * {@code tenantId}, {@code pname}, {@code pvalue} and {@code modifiedOn}, and a unique key on {@code (tenantId, pname)}.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public abstract class AbstractPostgresDynamicConfigSqlStorageStatements implements DynamicConfigSqlStorageStatements {
+
+    /**
+     * Name of the table that stores the config properties.
+     */
+    protected abstract String configTableName();
+
+    @Override
+    public String upsertConfigProperty() {
+        return "INSERT INTO " + configTableName() + " (tenantId, pname, pvalue, modifiedOn) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (tenantId, pname) DO UPDATE SET pvalue = EXCLUDED.pvalue, modifiedOn = EXCLUDED.modifiedOn";
+    }
+}
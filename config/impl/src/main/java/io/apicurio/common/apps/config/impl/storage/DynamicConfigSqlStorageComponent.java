@@ -20,6 +20,8 @@ import io.apicurio.common.apps.config.DynamicConfigPropertyDto;
 import io.apicurio.common.apps.config.DynamicConfigStorage;
 import io.apicurio.common.apps.logging.LoggerProducer;
 import io.apicurio.common.apps.storage.exceptions.NotFoundException;
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.Handle;
 import io.apicurio.common.apps.storage.sql.jdbi.HandleFactory;
 import org.slf4j.Logger;
 
@@ -36,6 +38,9 @@ import static io.apicurio.common.apps.storage.sql.jdbi.query.Sql.RESOURCE_IDENTI
 import static java.util.Objects.requireNonNull;
 
 /**
+ * Config properties are read from the read-only datasource, if configured. A request that has written a property
+ * reads from the primary datasource within the read-your-writes window, see {@link HandleFactory#withReadOnlyHandle}.
+ *
  * @author eric.wittmann@gmail.com
  * @author Jakub Senko <em>m@jsenko.net</em>
  */
@@ -76,7 +81,7 @@ public class DynamicConfigSqlStorageComponent implements DynamicConfigStorage {
     @Override
     public List<DynamicConfigPropertyDto> getConfigProperties() {
         log.debug("Getting all config properties.");
-        return handles.withHandleNoExceptionMapped(handle -> {
+        return handles.withReadOnlyHandleNoExceptionMapped(handle -> {
             String sql = sqlStatements.selectConfigProperties();
             return handle.createQuery(sql)
                     .setContext(RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP)
@@ -93,24 +98,31 @@ public class DynamicConfigSqlStorageComponent implements DynamicConfigStorage {
     @Override
     public DynamicConfigPropertyDto getConfigProperty(String propertyName) {
         log.debug("Selecting a single config property: {}", propertyName);
-        return handles.withHandleNoExceptionMapped(handle -> {
+        return handles.withReadOnlyHandleNoExceptionMapped(handle ->
+                findConfigProperty(handle, propertyName).orElseThrow(() ->
+                        NotFoundException.withoutStackTrace("Dynamic configuration property not found: " + propertyName, Map.of(
+                                RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP,
+                                RESOURCE_IDENTIFIER_CONTEXT_KEY, propertyName
+                        ))
+                )
+        );
+    }
 
-            String sql = sqlStatements.selectConfigPropertyByName();
-            Optional<DynamicConfigPropertyDto> res = handle.createQuery(sql)
-                    .setContext(RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP)
-                    .setContext(RESOURCE_IDENTIFIER_CONTEXT_KEY, propertyName)
-                    .bind(0, DEFAULT_TENANT_ID)
-                    .bind(1, propertyName)
-                    .map(new DynamicConfigPropertyDtoMapper())
-                    .findOne();
-
-            return res.orElseThrow(() ->
-                    new NotFoundException("Dynamic configuration property not found: " + propertyName, Map.of(
-                            RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP,
-                            RESOURCE_IDENTIFIER_CONTEXT_KEY, propertyName
-                    ))
-            );
-        });
+    @Override
+    public Optional<DynamicConfigPropertyDto> findConfigProperty(String propertyName) {
+        log.debug("Looking up a single config property: {}", propertyName);
+        return handles.withReadOnlyHandleNoExceptionMapped(handle -> findConfigProperty(handle, propertyName));
+    }
+
+    private Optional<DynamicConfigPropertyDto> findConfigProperty(Handle handle, String propertyName) throws StorageException {
+        String sql = sqlStatements.selectConfigPropertyByName();
+        return handle.createQuery(sql)
+                .setContext(RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP)
+                .setContext(RESOURCE_IDENTIFIER_CONTEXT_KEY, propertyName)
+                .bind(0, DEFAULT_TENANT_ID)
+                .bind(1, propertyName)
+                .map(new DynamicConfigPropertyDtoMapper())
+                .findOne();
     }
 
     @Override
@@ -119,10 +131,22 @@ public class DynamicConfigSqlStorageComponent implements DynamicConfigStorage {
         handles.withHandleNoExceptionMapped(handle -> {
             String propertyName = property.getName();
             String propertyValue = property.getValue();
-            // TODO: Why delete and recreate? Can be replaced by upsert?
 
-            // First delete the property row from the table
-            String sql = sqlStatements.deleteConfigProperty();
+            String sql = sqlStatements.upsertConfigProperty();
+            if (sql != null) {
+                handle.createUpdate(sql)
+                        .setContext(RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP)
+                        .setContext(RESOURCE_IDENTIFIER_CONTEXT_KEY, propertyName)
+                        .bind(0, DEFAULT_TENANT_ID)
+                        .bind(1, propertyName)
+                        .bind(2, propertyValue)
+                        .bind(3, System.currentTimeMillis())
+                        .execute();
+                return null;
+            }
+
+            // The database does not support upserts, first delete the property row from the table
+            sql = sqlStatements.deleteConfigProperty();
             handle.createUpdate(sql)
                     .setContext(RESOURCE_CONTEXT_KEY, RESOURCE_CONTEXT_KEY_DCP)
                     .setContext(RESOURCE_IDENTIFIER_CONTEXT_KEY, propertyName)
@@ -170,6 +194,7 @@ public class DynamicConfigSqlStorageComponent implements DynamicConfigStorage {
 
     protected List<String> getTenantsWithStaleConfigProperties(Instant since) {
         log.debug("Getting all tenant IDs with stale config properties.");
+        // Not from a replica, a modification that has not been replicated yet would be missed for good
         return handles.withHandleNoExceptionMapped(handle -> {
             String sql = sqlStatements.selectTenantIdsByConfigModifiedOn();
             return handle.createQuery(sql)
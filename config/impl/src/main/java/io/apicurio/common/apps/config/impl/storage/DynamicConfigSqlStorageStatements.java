@@ -16,6 +16,8 @@
 
 package io.apicurio.common.apps.config.impl.storage;
 
+import java.util.List;
+
 /**
  * @author eric.wittmann@gmail.com
  * @author Jakub Senko <em>m@jsenko.net</em>
@@ -28,9 +30,29 @@ public interface DynamicConfigSqlStorageStatements {
 
     String insertConfigProperty();
 
+    /**
+     * A statement that inserts a config property, or updates the value and modification time of an existing one,
+     * with the same parameters as {@link #insertConfigProperty()}. Returns null if not supported by the database,
+     * in which case the property is deleted and inserted again.
+     *
+     * @see AbstractPostgresDynamicConfigSqlStorageStatements
+     * @see AbstractH2DynamicConfigSqlStorageStatements
+     */
+    default String upsertConfigProperty() {
+        return null;
+    }
+
     String deleteAllConfigProperties();
 
     String selectConfigPropertyByName();
 
     String selectTenantIdsByConfigModifiedOn();
+
+    /**
+     * Frequently executed statements, which can be added to the statements executed during the warm-up of the storage,
+     * see {@code BaseSqlStorageComponent.Configuration#getWarmUpStatements()}.
+     */
+    default List<String> hotStatements() {
+        return List.of(selectConfigPropertyByName(), selectConfigProperties(), selectTenantIdsByConfigModifiedOn());
+    }
 }
@@ -11,6 +11,16 @@ public interface ContentHandle {
         return new StreamContentHandle(stream);
     }
 
+    /**
+     * Creates a handle that streams the content from the source, without reading it into memory, see {@link #isStreamed()}.
+     * The source is opened again whenever the content is needed.
+     *
+     * @param length length of the content in bytes, or -1 if not known
+     */
+    static ContentHandle create(ContentSource source, long length) {
+        return new SourceContentHandle(source, length);
+    }
+
     static ContentHandle create(byte[] bytes) {
         return new BytesContentHandle(bytes);
     }
@@ -27,5 +37,27 @@ public interface ContentHandle {
 
     int getSizeBytes();
 
+    /**
+     * Same as {@link #getSizeBytes()}, for content that may be larger than 2 GB.
+     */
+    default long getLength() {
+        return getSizeBytes();
+    }
+
     String getSha256Hash();
+
+    /**
+     * @return true if {@link #stream()} returns the content without reading it into memory, and can be called repeatedly
+     */
+    default boolean isStreamed() {
+        return false;
+    }
+
+    /**
+     * @return length of the content in bytes if it is streamed (see {@link #isStreamed()}) and the length is known,
+     * otherwise -1
+     */
+    default long getStreamLength() {
+        return -1;
+    }
 }
@@ -0,0 +1,18 @@
+package io.apicurio.common.apps.content.handle;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Source of content that can be read more than once, e.g. a file or a database BLOB.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@FunctionalInterface
+public interface ContentSource {
+
+    /**
+     * @return a new stream of the content, which the caller must close
+     */
+    InputStream open() throws IOException;
+}
@@ -0,0 +1,95 @@
+package io.apicurio.common.apps.content.handle;
+
+import io.apicurio.common.apps.content.IoUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Content handle that opens a new stream from its source whenever the content is needed,
+ * so that it can be streamed any number of times without reading the content into memory.
+ * The content is only kept in memory after {@link #bytes()} or {@link #string()} is called.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+class SourceContentHandle extends AbstractContentHandle {
+
+    private final ContentSource source;
+
+    // -1 until known
+    private long length;
+
+    SourceContentHandle(ContentSource source, long length) {
+        this.source = source;
+        this.length = length;
+    }
+
+    @Override
+    public InputStream stream() {
+        if (bytes != null) {
+            return new ByteArrayInputStream(bytes);
+        }
+        try {
+            return source.open();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public byte[] bytes() {
+        if (bytes == null) {
+            bytes = IoUtil.toBytes(stream());
+            length = bytes.length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getSizeBytes() {
+        long rval = getLength();
+        if (rval > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Content of " + rval + " bytes is too large, use getLength() instead");
+        }
+        return (int) rval;
+    }
+
+    @Override
+    public long getLength() {
+        if (length < 0) {
+            // Counted without keeping the content in memory
+            try (var stream = stream()) {
+                length = stream.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String getSha256Hash() {
+        if (bytes != null) {
+            return super.getSha256Hash();
+        }
+        try (var stream = stream()) {
+            return DigestUtils.sha256Hex(stream);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public boolean isStreamed() {
+        return bytes == null;
+    }
+
+    @Override
+    public long getStreamLength() {
+        return bytes == null ? length : -1;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.index.deployment;
+
+import java.util.List;
+import java.util.Optional;
+
+import io.quarkus.runtime.annotations.ConfigItem;
+import io.quarkus.runtime.annotations.ConfigPhase;
+import io.quarkus.runtime.annotations.ConfigRoot;
+
+@ConfigRoot(prefix = "app", name = "storage.sql.ddl", phase = ConfigPhase.BUILD_TIME)
+public class StorageIndexBuildTimeConfig {
+
+    /**
+     * Classpath directories with the DDL scripts to parse at build time,
+     * i.e. the values of {@code ddlDirRootPath} passed to {@code BaseSqlStorageComponent}.
+     */
+    @ConfigItem
+    public Optional<List<String>> rootPaths;
+
+    /**
+     * Database types whose scripts are parsed. Scripts that do not exist are skipped.
+     */
+    @ConfigItem(defaultValue = "h2,postgresql,mssql")
+    public List<String> dbTypes;
+}
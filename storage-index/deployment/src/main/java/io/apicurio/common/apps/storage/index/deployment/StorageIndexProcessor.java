@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.index.deployment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.apicurio.common.apps.storage.index.PrecompiledDdlRecorder;
+import io.apicurio.common.apps.storage.sql.PrecompiledDdl;
+import io.apicurio.common.apps.storage.sql.jdbi.parse.DdlParser;
+import io.quarkus.arc.deployment.SyntheticBeanBuildItem;
+import io.quarkus.deployment.annotations.BuildProducer;
+import io.quarkus.deployment.annotations.BuildStep;
+import io.quarkus.deployment.annotations.ExecutionTime;
+import io.quarkus.deployment.annotations.Record;
+import io.quarkus.deployment.builditem.HotDeploymentWatchedFileBuildItem;
+import io.quarkus.runtime.RuntimeValue;
+
+class StorageIndexProcessor {
+
+    @BuildStep
+    @Record(ExecutionTime.RUNTIME_INIT)
+    void syntheticBean(PrecompiledDdlRecorder recorder, StorageIndexBuildTimeConfig config,
+            BuildProducer<SyntheticBeanBuildItem> syntheticBeans, BuildProducer<HotDeploymentWatchedFileBuildItem> watchedFiles) {
+        if (config.rootPaths.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> latestVersions = new HashMap<>();
+        Map<String, List<String>> statements = new HashMap<>();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        for (String rootPath : config.rootPaths.get()) {
+            String versionPath = rootPath + "/version";
+            watchedFiles.produce(new HotDeploymentWatchedFileBuildItem(versionPath));
+            String version = readResource(classLoader, versionPath);
+            if (version == null) {
+                throw new RuntimeException("DDL version resource not found: " + versionPath);
+            }
+            int latestVersion = Integer.parseInt(version.trim());
+            latestVersions.put(rootPath, latestVersion);
+
+            for (String dbType : config.dbTypes) {
+                parse(classLoader, rootPath + "/" + dbType + ".ddl", statements, watchedFiles);
+                for (int v = 1; v <= latestVersion; v++) {
+                    parse(classLoader, rootPath + "/upgrades/" + v + "/" + dbType + ".upgrade.ddl", statements, watchedFiles);
+                }
+            }
+        }
+
+        final RuntimeValue<PrecompiledDdl> precompiledDdlRuntimeValue = recorder.initializePrecompiledDdl(latestVersions, statements);
+
+        syntheticBeans.produce(SyntheticBeanBuildItem.configure(PrecompiledDdl.class)
+                .runtimeValue(precompiledDdlRuntimeValue)
+                .unremovable()
+                .setRuntimeInit()
+                .done());
+    }
+
+    private static void parse(ClassLoader classLoader, String path, Map<String, List<String>> statements,
+            BuildProducer<HotDeploymentWatchedFileBuildItem> watchedFiles) {
+        watchedFiles.produce(new HotDeploymentWatchedFileBuildItem(path));
+        try (InputStream stream = classLoader.getResourceAsStream(path)) {
+            if (stream != null) {
+                statements.put(path, new DdlParser().parse(stream));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not parse DDL resource " + path, e);
+        }
+    }
+
+    private static String readResource(ClassLoader classLoader, String path) {
+        try (InputStream stream = classLoader.getResourceAsStream(path)) {
+            return stream != null ? new String(stream.readAllBytes(), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read resource " + path, e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.index;
+
+import java.util.List;
+import java.util.Map;
+
+import io.apicurio.common.apps.storage.sql.PrecompiledDdl;
+import io.quarkus.runtime.RuntimeValue;
+import io.quarkus.runtime.annotations.Recorder;
+
+@Recorder
+public class PrecompiledDdlRecorder {
+
+    public RuntimeValue<PrecompiledDdl> initializePrecompiledDdl(Map<String, Integer> latestVersions,
+            Map<String, List<String>> statements) {
+
+        return new RuntimeValue<>(new PrecompiledDdl(latestVersions, statements));
+    }
+}
@@ -38,6 +38,17 @@ public class NotFoundException extends StorageException {
         super(reason, context, cause);
     }
 
+    private NotFoundException(String message, Map<String, String> context, boolean writableStackTrace) {
+        super(message, context, null, writableStackTrace);
+    }
+
+    /**
+     * Creates an exception without a stack trace, for callers that handle a missing resource as an expected outcome.
+     */
+    public static NotFoundException withoutStackTrace(String message, Map<String, String> context) {
+        return new NotFoundException(message, context, false);
+    }
+
     @Override
     public boolean isRoot() {
         return false;
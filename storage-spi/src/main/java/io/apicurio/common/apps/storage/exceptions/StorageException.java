@@ -49,6 +49,15 @@ public class StorageException extends Exception {
         this.context = Optional.ofNullable(context);
     }
 
+    /**
+     * @param writableStackTrace false for exceptions used for flow control (e.g. a resource that does not exist),
+     *                           so that the cost of capturing the stack trace is not paid
+     */
+    protected StorageException(String reason, Map<String, String> context, Throwable cause, boolean writableStackTrace) {
+        super(reason, cause, true, writableStackTrace);
+        this.context = Optional.ofNullable(context);
+    }
+
     public boolean isRoot() {
         return true;
     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.exceptions;
+
+import java.util.Map;
+
+/**
+ * The storage rejected the operation, because too many operations are already waiting to be executed.
+ * The operation was not started, so it is safe to retry later.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class StorageOverloadedException extends StorageException {
+
+    private static final long serialVersionUID = -3365123145520981946L;
+
+    public StorageOverloadedException(String reason, Map<String, String> context) {
+        super(reason, context);
+    }
+
+    @Override
+    public boolean isRoot() {
+        return false;
+    }
+}
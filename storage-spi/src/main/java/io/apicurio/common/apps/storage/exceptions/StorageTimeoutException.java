@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.exceptions;
+
+import java.util.Map;
+
+/**
+ * A statement was cancelled because it exceeded its timeout or the deadline of the request,
+ * or it was not started because the deadline had already passed.
+ * Callers may use this to shed load, instead of retrying the operation.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class StorageTimeoutException extends StorageException {
+
+    private static final long serialVersionUID = 2817645206418750263L;
+
+    public StorageTimeoutException(String reason, Map<String, String> context) {
+        super(reason, context);
+    }
+
+    public StorageTimeoutException(String reason, Map<String, String> context, Throwable cause) {
+        super(reason, context, cause);
+    }
+
+    @Override
+    public boolean isRoot() {
+        return false;
+    }
+}
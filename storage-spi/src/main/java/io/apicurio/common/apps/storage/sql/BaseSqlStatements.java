@@ -20,7 +20,13 @@ import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.sql.jdbi.Handle;
 import io.apicurio.common.apps.storage.sql.jdbi.query.Update;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Returns SQL statements used by BaseSqlStorageComponent.
@@ -46,6 +52,34 @@ public interface BaseSqlStatements {
      */
     boolean isForeignKeyViolation(SQLException ex);
 
+    /**
+     * Returns true if the given exception represents a failure that may not happen again when the transaction is retried,
+     * e.g. a serialization failure or a deadlock. By default, these are failures with the SQL state class 40 (transaction rollback),
+     * and {@link SQLTransientException}s.
+     */
+    default boolean isTransientFailure(SQLException ex) {
+        String state = ex.getSQLState();
+        return ex instanceof SQLTransientException || (state != null && state.startsWith("40"));
+    }
+
+    /**
+     * A statement that returns the execution plan of the given statement, one line per row, without executing it.
+     * Parameters of the statement are not bound, so a statement with parameters is only explained
+     * if {@link #supportsExplainWithParameters(Connection)} returns true. Returns null if not supported by the database.
+     */
+    default String explainStatement(String sql) {
+        return null;
+    }
+
+    /**
+     * Returns true if the database can explain a statement with unbound parameters, see {@link #explainStatement(String)}.
+     *
+     * @param connection connection to the database, e.g. to check its version
+     */
+    default boolean supportsExplainWithParameters(Connection connection) throws SQLException {
+        return false;
+    }
+
     /**
      * A statement that returns 'true' if the database has already been initialized.
      */
@@ -62,4 +96,15 @@ public interface BaseSqlStatements {
     String casSequenceValue();
 
     String insertSequenceValue();
+
+    /**
+     * Frequently executed statements, which are warmed up on every connection during the warm-up of the storage,
+     * see {@code BaseSqlStorageComponent.Configuration#getWarmUpConnections()}.
+     * The statement of {@link #getNextSequenceValue()} is added by the storage if the database supports atomic increments.
+     */
+    default List<String> hotStatements() {
+        return Stream.of(getStorageProperty(), getSequenceValue(), casSequenceValue(), insertSequenceValue())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 }
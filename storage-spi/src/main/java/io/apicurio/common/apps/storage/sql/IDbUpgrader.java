@@ -25,6 +25,10 @@ public interface IDbUpgrader {
 
     /**
      * Called by the {@link AbstractSqlStorage} class when upgrading the database.
+     * <p>
+     * If the statement timeout ({@code app.storage.sql.statement-timeout}) is enabled, it applies to the statements
+     * executed here as well. Statements that may take longer, e.g. migrations of large tables, should set their own
+     * timeout, see {@link io.apicurio.common.apps.storage.sql.jdbi.query.Sql#setTimeout(java.time.Duration)}.
      *
      * @param dbHandle a DB handle
      * @throws Exception when the upgrade fails
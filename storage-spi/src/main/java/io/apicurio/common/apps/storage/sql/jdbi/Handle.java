@@ -16,6 +16,9 @@
 
 package io.apicurio.common.apps.storage.sql.jdbi;
 
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.query.Batch;
+import io.apicurio.common.apps.storage.sql.jdbi.query.BulkLoad;
 import io.apicurio.common.apps.storage.sql.jdbi.query.Query;
 import io.apicurio.common.apps.storage.sql.jdbi.query.Update;
 
@@ -40,4 +43,49 @@ public interface Handle extends Closeable {
      */
     Update createUpdate(String sql);
 
+    /**
+     * Create a new batch of statements without parameters, e.g. DDL.
+     * The default implementation executes each statement when it is added, with {@link #createUpdate(String)}.
+     * @return a new empty Batch
+     */
+    default Batch createBatch() {
+        return new Batch() {
+
+            @Override
+            public Batch add(String sql) throws StorageException {
+                createUpdate(sql).executeNoUpdate();
+                return this;
+            }
+
+            @Override
+            public void execute() {
+                // Statements have already been executed
+            }
+        };
+    }
+
+    /**
+     * Create a bulk load of rows into the given columns of a table.
+     * Implementations that do not support bulk loads throw {@link UnsupportedOperationException}.
+     * @param table name of the table
+     * @param columns names of the columns
+     * @return a new BulkLoad
+     */
+    default BulkLoad createBulkLoad(String table, String... columns) {
+        throw new UnsupportedOperationException("Bulk load is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Prepare the statement on the connection of the handle, so that the driver and the database have parsed it
+     * before it is first used. A query is also executed the given number of times, binding null to every parameter,
+     * because drivers such as PgJDBC use a server-side prepared statement, which is kept for the lifetime of the connection,
+     * only after the statement has been executed a number of times (the {@code prepareThreshold}, 5 by default).
+     * Other statements are only prepared, never executed, so that they do not change data, take locks, or fire triggers.
+     * The default implementation does nothing, the statement is prepared when it is first used.
+     * @param sql a SQL statement
+     * @param executions number of executions of a query
+     */
+    default void warmUp(String sql, int executions) throws StorageException {
+    }
+
 }
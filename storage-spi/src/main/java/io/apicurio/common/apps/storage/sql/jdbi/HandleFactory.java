@@ -1,6 +1,19 @@
 package io.apicurio.common.apps.storage.sql.jdbi;
 
 import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.query.KeysetPageQuery;
+import io.apicurio.common.apps.storage.sql.jdbi.query.MappedQuery;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author eric.wittmann@gmail.com
@@ -11,4 +24,139 @@ public interface HandleFactory {
     <R, X extends Exception> R withHandle(HandleCallback<R, X> callback) throws X, StorageException;
 
     <R, X extends Exception> R withHandleNoExceptionMapped(HandleCallback<R, X> callback);
+
+    /**
+     * Same as {@link #withHandle(HandleCallback)}, for callbacks that do not write.
+     * The handle may be connected to a read-only datasource (e.g. a read replica) if one is configured,
+     * so the callback might not see the most recent writes of other requests.
+     * <p>
+     * The default implementation calls {@link #withHandle(HandleCallback)}.
+     */
+    default <R, X extends Exception> R withReadOnlyHandle(HandleCallback<R, X> callback) throws X, StorageException {
+        return withHandle(callback);
+    }
+
+    /**
+     * Same as {@link #withHandleNoExceptionMapped(HandleCallback)}, for callbacks that do not write,
+     * see {@link #withReadOnlyHandle(HandleCallback)}.
+     */
+    default <R, X extends Exception> R withReadOnlyHandleNoExceptionMapped(HandleCallback<R, X> callback) {
+        return withHandleNoExceptionMapped(callback);
+    }
+
+    /**
+     * Same as {@link #withRetry(RetryPolicy, HandleCallback)}, with the retry policy configured for the application.
+     * <p>
+     * The default implementation calls {@link #withHandle(HandleCallback)}, and does not retry.
+     */
+    default <R, X extends Exception> R withRetry(HandleCallback<R, X> callback) throws X, StorageException {
+        return withHandle(callback);
+    }
+
+    /**
+     * Same as {@link #withHandle(HandleCallback)}, but each attempt to execute the callback runs in a new transaction,
+     * and an attempt that fails with a transient failure (see {@link io.apicurio.common.apps.storage.sql.BaseSqlStatements#isTransientFailure})
+     * is followed by another one, as decided by the retry policy.
+     * <p>
+     * The transaction of the caller, if any, is suspended while the callback is executed,
+     * so the callback does not see its uncommitted writes, and the changes of the callback are committed even if the caller rolls back.
+     * The callback may be executed more than once, and must not have side effects outside the database.
+     * <p>
+     * The default implementation calls {@link #withHandle(HandleCallback)}, in the transaction of the caller, and does not retry.
+     */
+    default <R, X extends Exception> R withRetry(RetryPolicy policy, HandleCallback<R, X> callback) throws X, StorageException {
+        return withHandle(callback);
+    }
+
+    /**
+     * Executes the query created by the callback on a dedicated connection, and returns a stream of the mapped rows.
+     * The stream owns the connection and its transaction, which are independent of the transaction of the caller,
+     * until the stream is closed. The stream must therefore be closed, e.g. in a try-with-resources statement.
+     * <p>
+     * Auto-commit is disabled on the connection, so that the driver fetches the rows in chunks of the fetch size
+     * of the query (see {@link io.apicurio.common.apps.storage.sql.jdbi.query.Query#setFetchSize(int)}) as the stream is consumed,
+     * instead of all rows at once. The transaction is rolled back when the stream is closed, so the query must not write.
+     * <p>
+     * The default implementation reads all rows into a list with {@link #withHandle(HandleCallback)}, and streams the list.
+     */
+    @SuppressWarnings("unchecked")
+    default <T, X extends Exception> Stream<T> withCursor(HandleCallback<MappedQuery<T>, X> callback) throws X, StorageException {
+        try {
+            return this.<List<T>, Exception>withHandle(handle -> callback.withHandle(handle).list()).stream();
+        } catch (StorageException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            // Thrown by the callback
+            throw (X) ex;
+        }
+    }
+
+    /**
+     * Returns the rows of a query ordered by a unique sort key, one page at a time,
+     * using keyset pagination: each page starts after the sort key of the last row of the previous page.
+     * Unlike {@code OFFSET}, the database does not read the rows of the previous pages again,
+     * so a large table can be scanned with constant memory and cost per page.
+     * <p>
+     * A page is fetched with {@link #withReadOnlyHandle(HandleCallback)} when the stream reaches it,
+     * so the pages are not a consistent snapshot of the table.
+     *
+     * @param pageSize maximum number of rows of a page
+     * @param sortKey  returns the sort key of a row
+     */
+    default <T, K> Stream<List<T>> keysetPages(int pageSize, Function<? super T, ? extends K> sortKey, KeysetPageQuery<T, K> pageQuery) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+        }
+        var pages = new Iterator<List<T>>() {
+
+            private K after;
+
+            private List<T> next;
+
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !last) {
+                    next = withReadOnlyHandleNoExceptionMapped(handle -> pageQuery.create(handle, after, pageSize).list());
+                    last = next.size() < pageSize;
+                    if (next.isEmpty()) {
+                        next = null;
+                    } else {
+                        after = sortKey.apply(next.get(next.size() - 1));
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var rval = next;
+                next = null;
+                return rval;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Same as {@link #withHandle(HandleCallback)}, but the callback is executed on a dedicated bounded executor,
+     * so the calling thread (e.g. an event loop) is not blocked.
+     * Thread context, such as the MDC and the CDI request context, is propagated to the callback.
+     * <p>
+     * If too many callbacks are already waiting, the returned stage fails immediately
+     * with {@link io.apicurio.common.apps.storage.exceptions.StorageOverloadedException}.
+     * <p>
+     * The default implementation executes the callback on the calling thread, and returns a completed stage.
+     */
+    default <R, X extends Exception> CompletionStage<R> withHandleAsync(HandleCallback<R, X> callback) {
+        try {
+            return CompletableFuture.completedFuture(withHandle(callback));
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
 }
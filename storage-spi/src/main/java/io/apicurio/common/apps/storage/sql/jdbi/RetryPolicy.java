@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when an operation that failed with a transient failure is attempted again,
+ * see {@link HandleFactory#withRetry(RetryPolicy, HandleCallback)}.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@FunctionalInterface
+public interface RetryPolicy {
+
+    /**
+     * Never attempts an operation again, e.g. to execute a callback once in a new transaction.
+     */
+    RetryPolicy NONE = (failedAttempts, elapsedMillis) -> -1;
+
+    /**
+     * @param failedAttempts number of attempts that have failed so far, at least 1
+     * @param elapsedMillis  time in milliseconds since the first attempt started
+     * @return time in milliseconds to wait before the next attempt, or a negative value to give up
+     */
+    long getBackoffMillis(int failedAttempts, long elapsedMillis);
+
+    /**
+     * Waits for an exponentially growing time between attempts, starting at the initial backoff and limited by the maximum backoff.
+     * Each wait is randomly shortened by up to a half, so that operations that failed together do not retry together.
+     * Gives up after the maximum number of attempts, or when the next attempt would start after the deadline.
+     */
+    static RetryPolicy exponentialBackoff(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis) {
+        if (maxAttempts < 1 || initialBackoffMillis < 1 || maxBackoffMillis < initialBackoffMillis || deadlineMillis < 0) {
+            throw new IllegalArgumentException("Invalid retry policy: maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis +
+                    ", maxBackoffMillis=" + maxBackoffMillis + ", deadlineMillis=" + deadlineMillis);
+        }
+        return (failedAttempts, elapsedMillis) -> {
+            if (failedAttempts >= maxAttempts) {
+                return -1;
+            }
+            long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(failedAttempts - 1, 30));
+            long backoff = ceiling - ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+            return elapsedMillis + backoff <= deadlineMillis ? backoff : -1;
+        };
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+
+/**
+ * Different statements without parameters (e.g. DDL), sent to the database together to save round-trips.
+ * Statements must not return a result set.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public interface Batch {
+
+    int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Add a statement to the batch. The batch is sent to the database
+     * whenever the number of pending statements reaches {@link #DEFAULT_BATCH_SIZE}.
+     */
+    Batch add(String sql) throws StorageException;
+
+    /**
+     * Send any pending statements to the database.
+     */
+    void execute() throws StorageException;
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Inserts a large number of rows into a table. Rows are taken from the iterator while they are being sent to the database,
+ * so memory use does not depend on the number of rows.
+ * <p>
+ * On PostgreSQL, the rows are sent with {@code COPY ... FROM STDIN}, which is much faster than inserts.
+ * On other databases, they are inserted in batches.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public interface BulkLoad {
+
+    int DEFAULT_BATCH_SIZE = 1000;
+
+    @FunctionalInterface
+    interface RowWriter<T> {
+
+        /**
+         * Sets the values of the columns of the row, in the order of the columns of the bulk load.
+         * Supported values are null, {@link String}, {@link Long}, {@link Integer}, {@link Boolean}, {@link Enum},
+         * {@link java.time.Instant}, {@link java.util.Date}, {@code byte[]} and {@link io.apicurio.common.apps.content.handle.ContentHandle}.
+         *
+         * @param values array of the size of the number of columns, reused for every row
+         */
+        void write(T row, Object[] values);
+    }
+
+    /**
+     * @see Sql#setContext(String, String)
+     */
+    BulkLoad setContext(String key, String value);
+
+    /**
+     * Set the number of rows inserted in one batch, if the database does not support {@code COPY}.
+     * The default is {@link #DEFAULT_BATCH_SIZE}.
+     */
+    BulkLoad setBatchSize(int size);
+
+    /**
+     * @return number of inserted rows
+     */
+    <T> long execute(Iterator<T> rows, RowWriter<T> writer) throws StorageException;
+
+    /**
+     * Same as {@link #execute(Iterator, RowWriter)}. The stream is closed afterwards.
+     */
+    default <T> long execute(Stream<T> rows, RowWriter<T> writer) throws StorageException {
+        try (rows) {
+            return execute(rows.iterator(), writer);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.Handle;
+
+/**
+ * Creates the query of one page of a keyset pagination,
+ * see {@link io.apicurio.common.apps.storage.sql.jdbi.HandleFactory#keysetPages(int, java.util.function.Function, KeysetPageQuery)}.
+ * <p>
+ * For example: {@code SELECT * FROM items WHERE id > ? ORDER BY id LIMIT ?}, with a query without the condition on the key for the first page.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@FunctionalInterface
+public interface KeysetPageQuery<T, K> {
+
+    /**
+     * @param after sort key of the last row of the previous page, or null for the first page
+     * @param limit maximum number of rows of the page
+     * @return query of the rows with a sort key greater than the given one, ordered by the sort key
+     */
+    MappedQuery<T> create(Handle handle, K after, int limit) throws StorageException;
+}
@@ -20,6 +20,7 @@ import io.apicurio.common.apps.storage.exceptions.StorageException;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -38,4 +39,32 @@ public interface MappedQuery<R> {
     List<R> list() throws StorageException;
 
     Stream<R> stream();
+
+    /**
+     * Map each row and pass it to the action, without collecting the results.
+     * The default implementation collects the results with {@link #list()}.
+     */
+    default void forEach(Consumer<? super R> action) throws StorageException {
+        list().forEach(action);
+    }
+
+    /**
+     * Collect the first column of every row as a long, without boxing. The row mapper is not used.
+     * SQL NULL values are returned as 0.
+     * <p>
+     * The default implementation maps the rows with {@link #list()}, so the row mapper must return numbers.
+     */
+    default long[] longArray() throws StorageException {
+        return list().stream().mapToLong(row -> row != null ? ((Number) row).longValue() : 0).toArray();
+    }
+
+    /**
+     * Collect the first column of every row as an int, without boxing. The row mapper is not used.
+     * SQL NULL values are returned as 0.
+     * <p>
+     * The default implementation maps the rows with {@link #list()}, so the row mapper must return numbers.
+     */
+    default int[] intArray() throws StorageException {
+        return list().stream().mapToInt(row -> row != null ? ((Number) row).intValue() : 0).toArray();
+    }
 }
@@ -19,6 +19,8 @@ package io.apicurio.common.apps.storage.sql.jdbi.query;
 import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper;
 
+import java.time.Duration;
+
 /**
  * @author eric.wittmann@gmail.com
  */
@@ -26,6 +28,28 @@ public interface Query extends Sql<Query> {
 
     Query setFetchSize(int size);
 
+    /**
+     * Cache the mapped result of the query, so that the same query with the same parameters and cache key
+     * is answered from memory until the time-to-live expires, or until a resource named by one of the tags is written.
+     * A resource is written by an {@link Update} with the {@link Sql#RESOURCE_CONTEXT_KEY} context set to its name.
+     * <p>
+     * Must be called before any parameter is bound. Results are shared between callers, and must not be modified.
+     * Writes of other nodes do not invalidate the cached results, so the time-to-live is the maximum staleness that the caller accepts.
+     * The results of {@link MappedQuery#stream()} and {@link MappedQuery#forEach} are cached as a list.
+     * Queries that bind a content handle, and queries executed when the cache is disabled, are not cached.
+     * <p>
+     * The row mapper can not identify the mapping by itself, e.g. lambdas with different captured values share a class,
+     * so every use of the cache key with the same query and parameters must map the rows in the same way.
+     *
+     * @param key  identifies how the rows are mapped, e.g. the name of the caller
+     * @param ttl  time-to-live of the cached result
+     * @param tags names of the resources the result depends on
+     */
+    default Query cached(String key, Duration ttl, String... tags) {
+        // Not cached, the query is executed every time
+        return this;
+    }
+
     <T> MappedQuery<T> map(RowMapper<T> mapper) throws StorageException;
 
     <T> MappedQuery<T> mapTo(Class<T> someClass) throws StorageException;
@@ -20,6 +20,7 @@ import io.apicurio.common.apps.content.handle.ContentHandle;
 import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.sql.jdbi.Handle;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 
@@ -46,12 +47,50 @@ public interface Sql<Q> {
      */
     Q setContext(String key, String value);
 
+    /**
+     * Set the maximum time the statement may run, instead of the default statement timeout.
+     * The timeout is rounded up to whole seconds. If the current request has a deadline that expires sooner,
+     * the statement is cancelled when the deadline expires.
+     *
+     * <p>
+     * The default implementation ignores the timeout.
+     *
+     * @param timeout {@link Duration#ZERO} for no timeout
+     */
+    @SuppressWarnings("unchecked")
+    default Q setTimeout(Duration timeout) {
+        return (Q) this;
+    }
+
     Q bind(int position, String value);
 
     Q bind(int position, Long value);
 
+    /**
+     * Same as {@link #bind(int, Long)}, without boxing the value.
+     * The default implementation boxes the value.
+     */
+    default Q bind(int position, long value) {
+        return bind(position, Long.valueOf(value));
+    }
+
     Q bind(int position, Integer value);
 
+    /**
+     * Same as {@link #bind(int, Integer)}, without boxing the value.
+     * The default implementation boxes the value.
+     */
+    default Q bind(int position, int value) {
+        return bind(position, Integer.valueOf(value));
+    }
+
+    /**
+     * Implementations that do not support binding a boolean throw {@link UnsupportedOperationException}.
+     */
+    default Q bind(int position, boolean value) {
+        throw new UnsupportedOperationException("Binding a boolean is not supported by " + getClass().getName());
+    }
+
     Q bind(int position, Enum<?> value);
 
     Q bind(int position, Date value);
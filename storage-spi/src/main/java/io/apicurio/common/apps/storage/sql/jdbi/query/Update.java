@@ -23,7 +23,46 @@ import io.apicurio.common.apps.storage.exceptions.StorageException;
  */
 public interface Update extends Sql<Update> {
 
+    int DEFAULT_BATCH_SIZE = 1000;
+
     int execute() throws StorageException;
 
     void executeNoUpdate() throws StorageException;
+
+    /**
+     * Set the maximum number of rows that are kept in a batch before it is sent to the database.
+     * Larger batches mean fewer round-trips, but more memory used by the driver.
+     * The default is {@link #DEFAULT_BATCH_SIZE}.
+     * <p>
+     * Implementations that do not support batches throw {@link UnsupportedOperationException}.
+     */
+    default Update setBatchSize(int size) {
+        throw new UnsupportedOperationException("Batch execution is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Add the currently bound parameters as a new row of the batch, and clear them
+     * so the next row can be bound. The batch is sent to the database
+     * whenever the number of pending rows reaches the batch size.
+     * <p>
+     * Implementations that do not support batches throw {@link UnsupportedOperationException}.
+     */
+    default Update add() throws StorageException {
+        throw new UnsupportedOperationException("Batch execution is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Send any pending rows to the database.
+     * <p>
+     * When using Postgres, configure the datasource with {@code reWriteBatchedInserts=true}
+     * so the driver rewrites a batch of inserts into multi-row statements.
+     * Note that the driver then reports {@link java.sql.Statement#SUCCESS_NO_INFO} as the row count.
+     *
+     * Implementations that do not support batches throw {@link UnsupportedOperationException}.
+     *
+     * @return update counts for every row added since the start of the batch, in order
+     */
+    default int[] executeBatch() throws StorageException {
+        throw new UnsupportedOperationException("Batch execution is not supported by " + getClass().getName());
+    }
 }
@@ -33,4 +33,17 @@ public abstract class AbstractH2BaseSqlStatements implements BaseSqlStatements {
     public boolean isForeignKeyViolation(SQLException error) {
         return error.getMessage() != null && error.getMessage().contains("Referential integrity constraint violation");
     }
+
+    /**
+     * Also retries concurrent updates of the same row (error 90131) and lock timeouts (HYT00).
+     */
+    @Override
+    public boolean isTransientFailure(SQLException ex) {
+        return BaseSqlStatements.super.isTransientFailure(ex) || "90131".equals(ex.getSQLState()) || "HYT00".equals(ex.getSQLState());
+    }
+
+    @Override
+    public String explainStatement(String sql) {
+        return "EXPLAIN " + sql;
+    }
 }
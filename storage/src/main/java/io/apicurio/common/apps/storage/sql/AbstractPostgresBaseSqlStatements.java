@@ -16,6 +16,7 @@
 
 package io.apicurio.common.apps.storage.sql;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 
 /**
@@ -33,4 +34,56 @@ public abstract class AbstractPostgresBaseSqlStatements implements BaseSqlStatem
     public boolean isForeignKeyViolation(SQLException ex) {
         return ex.getMessage() != null && ex.getMessage().contains("violates foreign key constraint");
     }
+
+    /**
+     * Also retries statements that could not acquire a lock with {@code NOWAIT} or within the {@code lock_timeout}.
+     */
+    @Override
+    public boolean isTransientFailure(SQLException ex) {
+        return BaseSqlStatements.super.isTransientFailure(ex) || "55P03".equals(ex.getSQLState());
+    }
+
+    /**
+     * A statement with parameters requires PostgreSQL 16 or later, which can plan a statement with parameter placeholders.
+     */
+    @Override
+    public String explainStatement(String sql) {
+        String numbered = toNumberedPlaceholders(sql);
+        if (numbered.equals(sql)) {
+            return "EXPLAIN " + sql;
+        }
+        return "EXPLAIN (GENERIC_PLAN) " + numbered;
+    }
+
+    @Override
+    public boolean supportsExplainWithParameters(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseMajorVersion() >= 16;
+    }
+
+    /**
+     * Replaces JDBC parameter placeholders with numbered ones ($1, $2, ...),
+     * except in string literals and quoted identifiers.
+     */
+    static String toNumberedPlaceholders(String sql) {
+        var rval = new StringBuilder(sql.length() + 8);
+        int parameter = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                rval.append(c);
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                rval.append(c);
+            } else if (c == '?') {
+                rval.append('$').append(++parameter);
+            } else {
+                rval.append(c);
+            }
+        }
+        return rval.toString();
+    }
 }
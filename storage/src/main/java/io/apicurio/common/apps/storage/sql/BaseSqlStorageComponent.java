@@ -2,18 +2,40 @@ package io.apicurio.common.apps.storage.sql;
 
 import io.apicurio.common.apps.content.handle.ContentHandle;
 import io.apicurio.common.apps.logging.LoggerProducer;
+import io.apicurio.common.apps.multitenancy.TenantContext;
 import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.sql.jdbi.Handle;
 import io.apicurio.common.apps.storage.sql.jdbi.HandleFactory;
+import io.apicurio.common.apps.storage.sql.jdbi.RetryPolicy;
 import io.apicurio.common.apps.storage.sql.jdbi.parse.DdlParser;
+import io.quarkus.arc.Arc;
 import lombok.Builder;
 import lombok.Getter;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.transaction.Transactional;
 
 import static java.util.Objects.requireNonNull;
@@ -25,10 +47,28 @@ import static java.util.Objects.requireNonNull;
 @ApplicationScoped
 public class BaseSqlStorageComponent {
 
-    public static String DEFAULT_TENANT_ID = "default"; // TODO Support multi-tenancy
+    /**
+     * Tenant of the data that is not owned by a tenant loaded from the {@link TenantContext},
+     * e.g. when multi-tenancy is disabled.
+     */
+    public static String DEFAULT_TENANT_ID = "default";
 
     private static final String DB_PROPERTY_VERSION = "db_version";
 
+    /**
+     * Sequence incremented on every write of a storage property, see {@link StoragePropertyCache}.
+     */
+    private static final String STORAGE_PROPERTIES_VERSION_SEQUENCE = "storage_properties_version";
+
+    @Inject
+    Instance<PrecompiledDdl> precompiledDdlInstance;
+
+    @Inject
+    Instance<TransactionSynchronizationRegistry> transactionRegistryInstance;
+
+    @Inject
+    Instance<TenantContext> tenantContextInstance;
+
     private HandleFactory handles;
 
     private Logger log;
@@ -38,6 +78,36 @@ public class BaseSqlStorageComponent {
 
     private Configuration config;
 
+    // Null if the DDL scripts were not parsed at build time
+    private PrecompiledDdl precompiledDdl;
+
+    private int latestDatabaseVersion;
+
+    // Null if the cache is disabled
+    private StoragePropertyCache storagePropertyCache;
+
+    // Null when not running in a CDI container
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    // Null when not running in a CDI container, or the multitenancy module is not present
+    private TenantContext tenantContext;
+
+    // Null if no sequence is allocated in blocks
+    private SequenceAllocatorCache sequenceAllocators;
+
+    private ExecutorService sequenceExecutor;
+
+    // Sequences of tenants that are known to exist, see seedTenantSequence.
+    // When full, only the least recently used entry is dropped, so that other tenants do not check their sequences again at once.
+    private final Map<List<String>, Boolean> seededSequences = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, Boolean> eldest) {
+            return size() > config.maxSequenceAllocators;
+        }
+    });
+
     @Builder
     @Getter
     public static class Configuration {
@@ -54,9 +124,76 @@ public class BaseSqlStorageComponent {
         @Builder.Default
         private Runnable onReady = () -> {
         };
+
+        /**
+         * Sequences that are allocated in blocks, mapped to the number of values reserved at once.
+         * Values of these sequences are served from memory, and stay unique across nodes,
+         * but unused values of a reserved block are lost on shutdown.
+         */
+        @Builder.Default
+        private Map<String, Integer> sequenceBlockSizes = Map.of();
+
+        /**
+         * Maximum time a storage property cached on this node may be stale after it has been written by another node.
+         * Set to {@link Duration#ZERO} to disable the cache, and read storage properties from the database on every call.
+         */
+        @Builder.Default
+        private Duration storagePropertyCacheCheckInterval = Duration.ofSeconds(1);
+
+        /**
+         * Maximum number of sequences allocated in blocks that are kept in memory, counting each tenant separately.
+         */
+        @Builder.Default
+        private Integer maxSequenceAllocators = 1000;
+
+        /**
+         * Sequences allocated in blocks that have not been used for this long are dropped from memory,
+         * together with the unused values of their block.
+         */
+        @Builder.Default
+        private Duration sequenceAllocatorIdleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * Number of connections that are opened at the same time during the warm-up of the storage, before it is ready.
+         * The {@link BaseSqlStatements#hotStatements()} and the {@link #getWarmUpStatements()} are warmed up on each of them,
+         * see {@link Handle#warmUp(String, int)}.
+         * Set to 0 to disable the warm-up, unless {@link #getWarmUpReads()} is set.
+         */
+        @Builder.Default
+        private Integer warmUpConnections = 0;
+
+        /**
+         * Additional statements warmed up on every connection during the warm-up.
+         */
+        @Builder.Default
+        private List<String> warmUpStatements = List.of();
+
+        /**
+         * Number of times each query is executed on every connection during the warm-up.
+         * Other statements are only prepared.
+         * Should be at least the {@code prepareThreshold} of the JDBC driver (5 by default in PgJDBC),
+         * after which the driver uses a server-side prepared statement.
+         */
+        @Builder.Default
+        private Integer warmUpExecutions = 5;
+
+        /**
+         * Number of reads of a storage property executed during the warm-up, spread over the warm-up connections.
+         */
+        @Builder.Default
+        private Integer warmUpReads = 0;
+
+        /**
+         * Maximum duration of the warm-up. The storage becomes ready when the time runs out, even if the warm-up is not complete.
+         */
+        @Builder.Default
+        private Duration warmUpBudget = Duration.ofSeconds(10);
     }
 
-    @Transactional
+    /**
+     * The database is initialized and upgraded in a new transaction, which is committed before the warm-up,
+     * so that the warm-up can use every connection of the pool.
+     */
     public synchronized void start(LoggerProducer loggerProducer, HandleFactory handles, Configuration config) {
         if (isStarting) {
             throw new RuntimeException("The BaseSqlStorageComponent can be started only once");
@@ -69,48 +206,183 @@ public class BaseSqlStorageComponent {
         requireNonNull(config.ddlDirRootPath);
         requireNonNull(config.initDB);
         requireNonNull(config.onReady);
+        requireNonNull(config.sequenceBlockSizes);
+        requireNonNull(config.storagePropertyCacheCheckInterval);
+        requireNonNull(config.maxSequenceAllocators);
+        requireNonNull(config.sequenceAllocatorIdleTimeout);
+        requireNonNull(config.warmUpConnections);
+        requireNonNull(config.warmUpStatements);
+        requireNonNull(config.warmUpExecutions);
+        requireNonNull(config.warmUpReads);
+        requireNonNull(config.warmUpBudget);
+        if (config.sequenceBlockSizes.containsKey(STORAGE_PROPERTIES_VERSION_SEQUENCE)) {
+            throw new IllegalArgumentException("Sequence " + STORAGE_PROPERTIES_VERSION_SEQUENCE + " can not be allocated in blocks");
+        }
         this.config = config;
 
+        if (precompiledDdlInstance != null && precompiledDdlInstance.isResolvable()) {
+            precompiledDdl = precompiledDdlInstance.get();
+        }
+        if (transactionRegistryInstance != null && transactionRegistryInstance.isResolvable()) {
+            transactionRegistry = transactionRegistryInstance.get();
+        }
+        if (tenantContextInstance != null && tenantContextInstance.isResolvable()) {
+            tenantContext = tenantContextInstance.get();
+        }
+        if (!config.storagePropertyCacheCheckInterval.isZero()) {
+            storagePropertyCache = new StoragePropertyCache(config.storagePropertyCacheCheckInterval, this::getStoragePropertiesVersion);
+        }
+
+        if (!config.sequenceBlockSizes.isEmpty()) {
+            sequenceExecutor = Executors.newCachedThreadPool(r -> {
+                var thread = new Thread(r, "sql-storage-sequence-allocator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            config.sequenceBlockSizes.forEach((sequenceKey, blockSize) ->
+                    log.info("Sequence {} is allocated in blocks of {} values.", sequenceKey, blockSize));
+            sequenceAllocators = new SequenceAllocatorCache(config.maxSequenceAllocators, config.sequenceAllocatorIdleTimeout,
+                    (tenantId, sequenceKey) -> new SequenceBlockAllocator(sequenceKey, config.sequenceBlockSizes.get(sequenceKey),
+                            (key, blockSize) -> incrementSequenceValue(tenantId, key, blockSize), sequenceExecutor));
+        }
+
         log.info("Starting SQL storage.");
 
-        handles.withHandleNoExceptionMapped(handle -> {
+        createStoragePropertiesVersion();
+        try {
+            handles.withRetry(RetryPolicy.NONE, handle -> {
+                initializeOrUpgradeDatabase(handle);
+                return null;
+            });
+        } catch (StorageException ex) {
+            throw new RuntimeException("Could not initialize the database.", ex);
+        }
+
+        warmUp();
+
+        isReady = true;
+        config.onReady.run();
+    }
 
-            var initialized = config.sqlStatements.isDatabaseInitialized(handle);
+    private void initializeOrUpgradeDatabase(Handle handle) throws StorageException {
+        var initialized = config.sqlStatements.isDatabaseInitialized(handle);
 
-            if (!initialized) {
-                if (config.initDB) {
-                    log.info("Database not initialized.");
-                    initializeDatabase(handle);
-                } else {
-                    log.error("Database not initialized.  Please use the DDL scripts to initialize the database before starting the application.");
-                    throw new RuntimeException("Database not initialized.");
-                }
+        if (!initialized) {
+            if (config.initDB) {
+                log.info("Database not initialized.");
+                initializeDatabase(handle);
             } else {
-                log.info("Database was already initialized, skipping.");
+                log.error("Database not initialized.  Please use the DDL scripts to initialize the database before starting the application.");
+                throw new RuntimeException("Database not initialized.");
             }
+        } else {
+            log.info("Database was already initialized, skipping.");
+        }
 
-            if (!isDatabaseCurrent(handle)) {
-                if (config.initDB) {
-                    log.info("Old database version detected, upgrading.");
-                    upgradeDatabase(handle);
-                } else {
-                    log.error("Detected an old version of the database.  Please use the DDL upgrade scripts to bring your database up to date.");
-                    throw new RuntimeException("Database not upgraded.");
-                }
+        if (!isDatabaseCurrent(handle)) {
+            if (config.initDB) {
+                log.info("Old database version detected, upgrading.");
+                upgradeDatabase(handle);
             } else {
-                log.info("Database is up to date.");
+                log.error("Detected an old version of the database.  Please use the DDL upgrade scripts to bring your database up to date.");
+                throw new RuntimeException("Database not upgraded.");
             }
+        } else {
+            log.info("Database is up to date.");
+        }
+    }
 
-            return null;
+    /**
+     * Opens the warm-up connections in parallel, holding each of them until all are open, so that the pool does not
+     * hand out the same connection again. The hot statements are warmed up on every connection, so that the driver
+     * and the database have already prepared them when they are first used, and then the synthetic reads are executed.
+     * The warm-up runs on its own threads, outside of any transaction, after the startup transaction has been committed.
+     * A failure of the warm-up is logged, it never fails the startup.
+     */
+    private void warmUp() {
+        if (config.warmUpConnections < 1 && config.warmUpReads < 1) {
+            return;
+        }
+        List<String> statements;
+        try {
+            statements = new ArrayList<>(config.sqlStatements.hotStatements());
+            if (config.supportsAtomicSequenceIncrement) {
+                statements.add(config.sqlStatements.getNextSequenceValue());
+            }
+            statements.addAll(config.warmUpStatements);
+        } catch (RuntimeException ex) {
+            log.warn("Could not collect the statements to warm up, only the connections are warmed up.", ex);
+            statements = List.of();
+        }
+        var hotStatements = statements;
+        int connections = Math.max(1, config.warmUpConnections);
+        long start = System.nanoTime();
+        long deadline = start + config.warmUpBudget.toNanos();
+
+        var allOpen = new CountDownLatch(connections);
+        var readsLeft = new AtomicInteger(config.warmUpReads);
+        var warmedUp = new AtomicInteger();
+        var reads = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(connections, r -> {
+            var thread = new Thread(r, "sql-storage-warm-up");
+            thread.setDaemon(true);
+            return thread;
         });
-
-        isReady = true;
-        config.onReady.run();
+        for (int i = 0; i < connections; i++) {
+            executor.execute(() -> {
+                try {
+                    handles.withHandle(handle -> {
+                        for (String sql : hotStatements) {
+                            if (System.nanoTime() - deadline >= 0) {
+                                break;
+                            }
+                            try {
+                                handle.warmUp(sql, config.warmUpExecutions);
+                                warmedUp.incrementAndGet();
+                            } catch (StorageException ex) {
+                                log.debug("Could not warm up statement: {}", sql, ex);
+                            }
+                        }
+                        allOpen.countDown();
+                        allOpen.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        while (System.nanoTime() - deadline < 0 && readsLeft.getAndDecrement() > 0) {
+                            handle.createQuery(config.sqlStatements.getStorageProperty())
+                                    .bind(0, DB_PROPERTY_VERSION)
+                                    .mapTo(String.class)
+                                    .findOne();
+                            reads.incrementAndGet();
+                        }
+                        return null;
+                    });
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    log.warn("Warm-up of a database connection failed.", ex);
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("Warm-up of the SQL storage did not complete within {}.", config.warmUpBudget);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        log.info("Warm-up of the SQL storage took {} ms: {} of {} connections opened, {} statements warmed up, {} reads executed.",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), connections - allOpen.getCount(), connections,
+                warmedUp.get(), reads.get());
     }
 
     private int getLatestDatabaseVersion() {
-        var resource = getResource(config.ddlDirRootPath + "/version");
-        return Integer.parseInt(resource.string());
+        if (latestDatabaseVersion == 0) {
+            latestDatabaseVersion = Optional.ofNullable(precompiledDdl)
+                    .flatMap(ddl -> ddl.getLatestVersion(config.ddlDirRootPath))
+                    .orElseGet(() -> Integer.parseInt(getResource(config.ddlDirRootPath + "/version").string().trim()));
+        }
+        return latestDatabaseVersion;
     }
 
     /**
@@ -129,17 +401,12 @@ public class BaseSqlStorageComponent {
 
         try {
 
-            DdlParser parser = new DdlParser();
             var dbt = config.sqlStatements.dbType();
             var path = config.ddlDirRootPath + "/" + dbt + ".ddl";
-            var resource = getResource(path);
             log.debug("DDL root path: {}", path);
-            var statements = parser.parse(resource.stream());
             log.debug("---");
-            for (String statement : statements) {
-                log.debug(statement);
-                handle.createUpdate(statement).execute();
-            }
+            executeDdl(handle, path);
+            createStoragePropertiesVersion(handle);
             this.setStorageProperty(DB_PROPERTY_VERSION, String.valueOf(getLatestDatabaseVersion()));
             log.debug("---");
 
@@ -175,21 +442,10 @@ public class BaseSqlStorageComponent {
             try {
                 log.info("Performing upgrade {} -> {}", nextVersion - 1, nextVersion);
 
-                DdlParser parser = new DdlParser();
-                var resource = getResource(config.ddlDirRootPath + "/upgrades/" + nextVersion + "/" + config.sqlStatements.dbType() + ".upgrade.ddl");
-                var statements = parser.parse(resource.stream());
+                var path = config.ddlDirRootPath + "/upgrades/" + nextVersion + "/" + config.sqlStatements.dbType() + ".upgrade.ddl";
 
                 log.debug("---");
-                for (String statement : statements) {
-                    log.debug(statement);
-
-                    if (statement.startsWith("UPGRADER:")) {
-                        String cname = statement.substring(9).trim();
-                        applyUpgrader(handle, cname);
-                    } else {
-                        handle.createUpdate(statement).execute();
-                    }
-                }
+                executeDdl(handle, path);
                 setStorageProperty(DB_PROPERTY_VERSION, String.valueOf(nextVersion));
                 log.debug("---");
 
@@ -200,6 +456,48 @@ public class BaseSqlStorageComponent {
         }
     }
 
+    /**
+     * Executes the statements of a DDL script, parsed at build time, or while the script is being read from the classpath.
+     * Consecutive statements are sent to the database in a batch. Statements that may return a result set,
+     * and upgrader directives ({@code UPGRADER: <class name>}), end the batch and are executed on their own.
+     */
+    private void executeDdl(Handle handle, String path) throws IOException, StorageException {
+        Optional<List<String>> precompiled = precompiledDdl != null ? precompiledDdl.getStatements(path) : Optional.empty();
+        if (precompiled.isPresent()) {
+            log.debug("Using the statements of {} parsed at build time.", path);
+            executeDdl(handle, precompiled.get().iterator());
+            return;
+        }
+        try (InputStream stream = getResource(path).stream()) {
+            executeDdl(handle, new DdlParser().statements(stream));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private void executeDdl(Handle handle, Iterator<String> statements) throws StorageException {
+        var batch = handle.createBatch();
+        while (statements.hasNext()) {
+            String statement = statements.next();
+            log.debug(statement);
+
+            if (statement.startsWith("UPGRADER:")) {
+                batch.execute();
+                String cname = statement.substring(9).trim();
+                applyUpgrader(handle, cname);
+            } else if (DdlParser.isQuery(statement)) {
+                batch.execute();
+                // Upgrades of large databases may take long
+                handle.createUpdate(statement)
+                        .setTimeout(Duration.ZERO)
+                        .executeNoUpdate();
+            } else {
+                batch.add(statement);
+            }
+        }
+        batch.execute();
+    }
+
     /**
      * Instantiates an instance of the given upgrader class and then invokes it.  Used to perform
      * advanced upgrade logic when upgrading the DB (logic that cannot be handled in simple SQL
@@ -239,80 +537,276 @@ public class BaseSqlStorageComponent {
         return isReady;
     }
 
+    @PreDestroy
+    void stop() {
+        if (sequenceExecutor != null) {
+            sequenceExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Storage properties are cached, see {@code Configuration.storagePropertyCacheCheckInterval},
+     * except in a transaction that has written a storage property, which reads its own uncommitted writes.
+     *
+     * @return value of the storage property, or null if it does not exist or could not be read
+     */
     @Transactional
     public String getStorageProperty(String key) {
         try {
-            return handles.withHandle(handle ->
-                    handle.createQuery(config.sqlStatements.getStorageProperty())
-                            .bind(0, key)
-                            .mapTo(String.class)
-                            .one()
-            );
+            if (storagePropertyCache != null && !isStoragePropertyWrittenInTransaction()) {
+                return storagePropertyCache.get(key, this::loadStorageProperty).orElse(null);
+            }
+            return loadStorageProperty(key).orElse(null);
         } catch (StorageException ex) {
-            log.warn("Storage property " + key + " does not exist", ex);
+            log.warn("Could not read storage property " + key, ex);
             return null;
         }
     }
 
+    /**
+     * Read from the read-only datasource, if configured. The transaction that has written the property,
+     * or a request within the read-your-writes window, reads from the primary datasource.
+     */
+    private Optional<String> loadStorageProperty(String key) throws StorageException {
+        // Missing properties are expected, e.g. before they are first set
+        return handles.withReadOnlyHandle(handle ->
+                handle.createQuery(config.sqlStatements.getStorageProperty())
+                        .bind(0, key)
+                        .mapTo(String.class)
+                        .findOne()
+        );
+    }
+
     @Transactional
     public void setStorageProperty(String key, String value) {
-        handles.withHandleNoExceptionMapped(handle ->
-                config.sqlStatements.setStorageProperty(key, value)
-                        .setHandleOnce(handle)
-                        .execute()
-        );
+        long version = handles.withHandleNoExceptionMapped(handle -> {
+            config.sqlStatements.setStorageProperty(key, value)
+                    .setHandleOnce(handle)
+                    .execute();
+            // Other nodes drop their cached storage properties when they see the new version.
+            // The version is written in the same transaction, so that it is not seen before the property,
+            // and its row already exists, see createStoragePropertiesVersion().
+            return nextSequenceValue(DEFAULT_TENANT_ID, STORAGE_PROPERTIES_VERSION_SEQUENCE);
+        });
+        if (storagePropertyCache != null) {
+            markStoragePropertyWrittenInTransaction();
+            afterCommit(() -> storagePropertyCache.written(key, value, version));
+        }
     }
 
     /**
-     * Try to atomically compute the next value in a sequence with the given name.
-     * Implements a workaround for databases which do not implement atomic increments, like H2.
+     * Creates the row of the storage properties version of an existing database in its own transaction,
+     * if it does not exist yet, so that concurrent first writes of storage properties only update it.
+     * On some databases (e.g. PostgreSQL), a failed insert would abort the transaction of the caller.
+     * A new database gets the row when it is initialized.
+     */
+    private void createStoragePropertiesVersion() {
+        try {
+            handles.withRetry(RetryPolicy.NONE, handle -> {
+                createStoragePropertiesVersion(handle);
+                return null;
+            });
+        } catch (StorageException ex) {
+            // The database is not initialized yet, or another node has created the row at the same time
+            log.debug("Could not create the storage properties version.", ex);
+        }
+    }
+
+    private void createStoragePropertiesVersion(Handle handle) throws StorageException {
+        var current = handle.createQuery(config.sqlStatements.getSequenceValue())
+                .bind(0, DEFAULT_TENANT_ID)
+                .bind(1, STORAGE_PROPERTIES_VERSION_SEQUENCE)
+                .mapTo(Long.class)
+                .findOne();
+        if (current.isEmpty()) {
+            handle.createUpdate(config.sqlStatements.insertSequenceValue())
+                    .bind(0, DEFAULT_TENANT_ID)
+                    .bind(1, STORAGE_PROPERTIES_VERSION_SEQUENCE)
+                    .bind(2, 0L)
+                    .execute();
+        }
+    }
+
+    private void markStoragePropertyWrittenInTransaction() {
+        if (transactionRegistry != null && transactionRegistry.getTransactionStatus() != Status.STATUS_NO_TRANSACTION) {
+            transactionRegistry.putResource(storagePropertyCache, Boolean.TRUE);
+        }
+    }
+
+    private boolean isStoragePropertyWrittenInTransaction() {
+        return transactionRegistry != null && transactionRegistry.getTransactionStatus() != Status.STATUS_NO_TRANSACTION
+                && transactionRegistry.getResource(storagePropertyCache) != null;
+    }
+
+    /**
+     * Read from the same datasource as the properties, so that a lagging replica can not
+     * report a version newer than the properties it returns.
+     */
+    private long getStoragePropertiesVersion() throws StorageException {
+        return handles.withReadOnlyHandle(handle ->
+                handle.createQuery(config.sqlStatements.getSequenceValue())
+                        .bind(0, DEFAULT_TENANT_ID)
+                        .bind(1, STORAGE_PROPERTIES_VERSION_SEQUENCE)
+                        .mapTo(Long.class)
+                        .findOne()
+        ).orElse(0L);
+    }
+
+    /**
+     * Runs the action after the current transaction is committed, or immediately if there is no transaction.
+     */
+    private void afterCommit(Runnable action) {
+        if (transactionRegistry == null || transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            action.run();
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #nextSequenceValue(String, String)}, for the tenant of the current request,
+     * or {@link #DEFAULT_TENANT_ID} if there is no request or the tenant has not been loaded.
      */
     @Transactional
     public long nextSequenceValue(String sequenceKey) throws StorageException {
+        return nextSequenceValue(currentTenantId(), sequenceKey);
+    }
+
+    /**
+     * Try to atomically compute the next value in a sequence with the given name. Every tenant has its own sequences.
+     * Implements a workaround for databases which do not implement atomic increments, like H2.
+     * Sequences configured in {@code Configuration.sequenceBlockSizes} are served from a reserved block of values.
+     * <p>
+     * Sequences used to be shared by all tenants, stored as the sequences of {@link #DEFAULT_TENANT_ID}.
+     * When the sequence of a tenant does not exist yet, it continues from the current value of the shared sequence,
+     * so that the new values do not collide with the values the tenant has already used.
+     */
+    @Transactional
+    public long nextSequenceValue(String tenantId, String sequenceKey) throws StorageException {
+        requireNonNull(tenantId);
+        if (sequenceAllocators != null && config.sequenceBlockSizes.containsKey(sequenceKey)) {
+            return sequenceAllocators.get(tenantId, sequenceKey).next();
+        }
         if (config.supportsAtomicSequenceIncrement) {
+            seedTenantSequence(tenantId, sequenceKey);
             // In case the database supports atomic increments
             return handles.withHandleNoExceptionMapped(handle ->
                     handle.createQuery(config.sqlStatements.getNextSequenceValue())
-                            .bind(0, DEFAULT_TENANT_ID)
+                            .bind(0, tenantId)
                             .bind(1, sequenceKey)
                             .mapTo(Long.class)
                             .one()
             );
         } else {
-            // Attempt a CAS-like operation with 20 retries
-            for (int retries = 1; retries <= 20; retries++) {
-                try {
-                    var result = tryNextSequenceValue(sequenceKey);
-                    if (result.isPresent()) {
-                        return result.get();
-                    }
-                } catch (Exception ex) {
-                    if (retries == 20) {
-                        throw ex; // Failed
+            return incrementSequenceValue(tenantId, sequenceKey, 1);
+        }
+    }
+
+    private String currentTenantId() {
+        // The tenant context is request scoped
+        if (tenantContext != null && Arc.container().requestContext().isActive()) {
+            return tenantContext.getTenantIdOrElse(DEFAULT_TENANT_ID);
+        }
+        return DEFAULT_TENANT_ID;
+    }
+
+    /**
+     * Creates the sequence of the tenant, starting at the current value of the shared sequence,
+     * before it is created by the atomic increment starting from zero.
+     * Runs in a separate transaction, so that an insert that fails because the sequence
+     * has been created concurrently does not fail the transaction of the caller.
+     */
+    private void seedTenantSequence(String tenantId, String sequenceKey) {
+        if (DEFAULT_TENANT_ID.equals(tenantId)) {
+            return;
+        }
+        var key = List.of(tenantId, sequenceKey);
+        // Not containsKey, which does not update the order of the entries
+        if (seededSequences.get(key) != null) {
+            return;
+        }
+        try {
+            handles.withRetry(RetryPolicy.NONE, handle -> {
+                if (getSequenceValue(handle, tenantId, sequenceKey).isEmpty()) {
+                    long sharedValue = getSharedSequenceValue(handle, tenantId, sequenceKey);
+                    if (sharedValue > 0) {
+                        handle.createUpdate(config.sqlStatements.insertSequenceValue())
+                                .bind(0, tenantId)
+                                .bind(1, sequenceKey)
+                                .bind(2, sharedValue)
+                                .execute();
                     }
                 }
+                return null;
+            });
+        } catch (StorageException ex) {
+            // Most likely created concurrently, checked again on the next call
+            log.debug("Could not create sequence {} of tenant {}.", sequenceKey, tenantId, ex);
+            return;
+        }
+        seededSequences.put(key, Boolean.TRUE);
+    }
+
+    private Optional<Long> getSequenceValue(Handle handle, String tenantId, String sequenceKey) throws StorageException {
+        return handle.createQuery(config.sqlStatements.getSequenceValue())
+                .bind(0, tenantId)
+                .bind(1, sequenceKey)
+                .mapTo(Long.class)
+                .findOne();
+    }
+
+    /**
+     * @return current value of the sequence shared by all tenants, or zero if there is none
+     */
+    private long getSharedSequenceValue(Handle handle, String tenantId, String sequenceKey) throws StorageException {
+        if (DEFAULT_TENANT_ID.equals(tenantId)) {
+            return 0;
+        }
+        return getSequenceValue(handle, DEFAULT_TENANT_ID, sequenceKey).orElse(0L);
+    }
+
+    private long incrementSequenceValue(String tenantId, String sequenceKey, long increment) throws StorageException {
+        // Attempt a CAS-like operation with 20 retries
+        for (int retries = 1; retries <= 20; retries++) {
+            try {
+                var result = tryIncrementSequenceValue(tenantId, sequenceKey, increment);
+                if (result.isPresent()) {
+                    return result.get();
+                }
+            } catch (Exception ex) {
+                if (retries == 20) {
+                    throw ex; // Failed
+                }
             }
-            throw new StorageException("Could not get next value of sequence " + sequenceKey, null);
         }
+        throw new StorageException("Could not get next value of sequence " + sequenceKey, null);
     }
 
-    @Transactional(Transactional.TxType.REQUIRES_NEW) // We want a fresh transaction for each retry
-    private Optional<Long> tryNextSequenceValue(String sequenceKey) throws StorageException {
+    /**
+     * Runs in the transaction of the caller, if any.
+     */
+    private Optional<Long> tryIncrementSequenceValue(String tenantId, String sequenceKey, long increment) throws StorageException {
         // Get the current value if exists
         Optional<Long> currentValue = handles.withHandleNoExceptionMapped(handle ->
-                handle.createQuery(config.sqlStatements.getSequenceValue())
-                        .bind(0, DEFAULT_TENANT_ID)
-                        .bind(1, sequenceKey)
-                        .mapTo(Long.class)
-                        .findOne()
-        );
+                getSequenceValue(handle, tenantId, sequenceKey));
         if (currentValue.isPresent()) {
-            Long newValue = currentValue.get() + 1;
+            Long newValue = currentValue.get() + increment;
             // Try to update the value
             var affected = handles.withHandle(handle ->
                     handle.createUpdate(config.sqlStatements.casSequenceValue())
                             .bind(0, newValue)
-                            .bind(1, DEFAULT_TENANT_ID)
+                            .bind(1, tenantId)
                             .bind(2, sequenceKey)
                             .bind(3, currentValue.get())
                             .execute());
@@ -322,14 +816,17 @@ public class BaseSqlStorageComponent {
                 return Optional.empty();
             }
         } else {
-            // Try to insert an initial value
-            handles.withHandle(handle ->
-                    handle.createUpdate(config.sqlStatements.insertSequenceValue())
-                            .bind(0, DEFAULT_TENANT_ID)
-                            .bind(1, sequenceKey)
-                            .bind(2, 1)
-                            .execute());
-            return Optional.of(1L);
+            // Try to insert an initial value, continuing the shared sequence
+            long initialValue = handles.withHandle(handle -> {
+                long value = getSharedSequenceValue(handle, tenantId, sequenceKey) + increment;
+                handle.createUpdate(config.sqlStatements.insertSequenceValue())
+                        .bind(0, tenantId)
+                        .bind(1, sequenceKey)
+                        .bind(2, value)
+                        .execute();
+                return value;
+            });
+            return Optional.of(initialValue);
         }
     }
 }
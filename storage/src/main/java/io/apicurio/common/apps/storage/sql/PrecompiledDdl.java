@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * DDL scripts parsed at build time by the storage index Quarkus extension,
+ * so that {@link BaseSqlStorageComponent} does not read and parse them from the classpath at startup.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class PrecompiledDdl {
+
+    private final Map<String, Integer> latestVersions;
+
+    private final Map<String, List<String>> statements;
+
+    /**
+     * @param latestVersions content of the {@code version} file, by DDL root path
+     * @param statements     parsed statements of each script, by resource path
+     */
+    public PrecompiledDdl(Map<String, Integer> latestVersions, Map<String, List<String>> statements) {
+        this.latestVersions = Map.copyOf(latestVersions);
+        this.statements = Map.copyOf(statements);
+    }
+
+    /**
+     * @param ddlDirRootPath see {@code BaseSqlStorageComponent.Configuration.ddlDirRootPath}
+     */
+    public Optional<Integer> getLatestVersion(String ddlDirRootPath) {
+        return Optional.ofNullable(latestVersions.get(ddlDirRootPath));
+    }
+
+    /**
+     * @param path resource path of the script, e.g. {@code <ddlDirRootPath>/upgrades/2/postgresql.upgrade.ddl}
+     */
+    public Optional<List<String>> getStatements(String path) {
+        return Optional.ofNullable(statements.get(path));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded set of {@link SequenceBlockAllocator}s, one for each tenant and sequence.
+ * <p>
+ * Every allocator is independent, so callers of a busy tenant do not wait for the allocators of other tenants.
+ * Allocators that have not been used for the idle timeout are dropped, and when the maximum number of allocators
+ * is reached, the least recently used one is dropped as well. The unused values of the block reserved
+ * by a dropped allocator are lost, creating a gap in the sequence, in the same way as on shutdown.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+class SequenceAllocatorCache {
+
+    @FunctionalInterface
+    interface AllocatorFactory {
+
+        SequenceBlockAllocator create(String tenantId, String sequenceKey);
+    }
+
+    private final int maxEntries;
+
+    private final long idleTimeoutNanos;
+
+    private final AllocatorFactory factory;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    // Written while holding the lock of this
+    private volatile long nextSweep;
+
+    SequenceAllocatorCache(int maxEntries, Duration idleTimeout, AllocatorFactory factory) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of sequence allocators must be positive, got " + maxEntries);
+        }
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout of sequence allocators must be positive, got " + idleTimeout);
+        }
+        this.maxEntries = maxEntries;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.factory = factory;
+        this.nextSweep = System.nanoTime() + idleTimeoutNanos;
+    }
+
+    SequenceBlockAllocator get(String tenantId, String sequenceKey) {
+        long now = System.nanoTime();
+        if (now - nextSweep >= 0) {
+            evict(now);
+        }
+        var key = new Key(tenantId, sequenceKey);
+        var entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxEntries) {
+                evict(now);
+            }
+            entry = entries.computeIfAbsent(key, k -> new Entry(factory.create(tenantId, sequenceKey)));
+        }
+        entry.lastUsed = now;
+        return entry.allocator;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict(long now) {
+        entries.values().removeIf(e -> now - e.lastUsed > idleTimeoutNanos);
+        while (entries.size() >= maxEntries) {
+            Key oldest = null;
+            long oldestUse = 0;
+            for (var e : entries.entrySet()) {
+                if (oldest == null || e.getValue().lastUsed - oldestUse < 0) {
+                    oldest = e.getKey();
+                    oldestUse = e.getValue().lastUsed;
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            entries.remove(oldest);
+        }
+        nextSweep = now + idleTimeoutNanos;
+    }
+
+    private static class Entry {
+
+        final SequenceBlockAllocator allocator;
+
+        volatile long lastUsed = System.nanoTime();
+
+        Entry(SequenceBlockAllocator allocator) {
+            this.allocator = allocator;
+        }
+    }
+
+    private static class Key {
+
+        final String tenantId;
+        final String sequenceKey;
+
+        Key(String tenantId, String sequenceKey) {
+            this.tenantId = tenantId;
+            this.sequenceKey = sequenceKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return tenantId.equals(other.tenantId) && sequenceKey.equals(other.sequenceKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenantId, sequenceKey);
+        }
+    }
+}
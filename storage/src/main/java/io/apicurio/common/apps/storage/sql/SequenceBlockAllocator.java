@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves values of a single sequence from blocks reserved in the database (hi/lo allocation).
+ * <p>
+ * A block of values is reserved in one atomic step, and then handed out from memory.
+ * When a block is 75% used, the next one is reserved in the background,
+ * so callers do not usually wait for the database. Values are unique across nodes,
+ * since every block is reserved by moving the stored sequence value forward,
+ * but values that were reserved and not used (e.g. on shutdown) are lost, creating gaps.
+ * <p>
+ * Reservations run on the given executor, outside of the caller's transaction,
+ * so a rollback of the caller can not release a block that has already been handed out.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+class SequenceBlockAllocator {
+
+    @FunctionalInterface
+    interface BlockReserver {
+
+        /**
+         * Atomically increase the stored value of the sequence by the block size.
+         *
+         * @return the new stored value, which is the last value of the reserved block
+         */
+        long reserve(String sequenceKey, int blockSize) throws StorageException;
+    }
+
+    private static final Block EMPTY = new Block(1, 0, 0);
+
+    private final String sequenceKey;
+
+    private final int blockSize;
+
+    private final BlockReserver reserver;
+
+    private final Executor executor;
+
+    private volatile Block current = EMPTY;
+
+    // Guarded by this
+    private CompletableFuture<Block> prefetch;
+
+    SequenceBlockAllocator(String sequenceKey, int blockSize, BlockReserver reserver, Executor executor) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size of sequence " + sequenceKey + " must be positive, got " + blockSize);
+        }
+        this.sequenceKey = sequenceKey;
+        this.blockSize = blockSize;
+        this.reserver = reserver;
+        this.executor = executor;
+    }
+
+    long next() throws StorageException {
+        while (true) {
+            Block block = current;
+            long value = block.next.getAndIncrement();
+            if (value <= block.last) {
+                if (value == block.prefetchAt) {
+                    // Exactly one caller reaches the low-water mark of each block
+                    startPrefetch();
+                }
+                return value;
+            }
+            synchronized (this) {
+                if (current == block) {
+                    current = takeNextBlock();
+                }
+            }
+        }
+    }
+
+    private synchronized void startPrefetch() {
+        if (prefetch == null) {
+            prefetch = reserveAsync();
+        }
+    }
+
+    private Block takeNextBlock() throws StorageException {
+        CompletableFuture<Block> next = prefetch;
+        prefetch = null;
+        if (next != null) {
+            try {
+                return next.join();
+            } catch (CompletionException ex) {
+                // The prefetch failed, try again below
+            }
+        }
+        try {
+            return reserveAsync().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof StorageException) {
+                throw (StorageException) ex.getCause();
+            }
+            throw new StorageException("Could not reserve a block of values for sequence " + sequenceKey, null, ex.getCause());
+        }
+    }
+
+    private CompletableFuture<Block> reserveAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long last = reserver.reserve(sequenceKey, blockSize);
+                return new Block(last - blockSize + 1, last, last - blockSize / 4);
+            } catch (StorageException ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
+    private static class Block {
+
+        final AtomicLong next;
+        final long last;
+        final long prefetchAt;
+
+        Block(long first, long last, long prefetchAt) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+            this.prefetchAt = Math.max(first, prefetchAt);
+        }
+    }
+}
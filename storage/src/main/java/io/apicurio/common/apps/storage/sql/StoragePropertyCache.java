@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through cache of storage properties, including properties that do not exist.
+ * <p>
+ * Every write of a storage property increments a version stored in the database.
+ * The cache reads the version at most once per check interval, and drops all cached values
+ * when the version has been changed by another node. A value cached on this node can therefore
+ * be stale for at most the check interval.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+class StoragePropertyCache {
+
+    @FunctionalInterface
+    interface VersionReader {
+
+        /**
+         * @return the current version of the storage properties, 0 if they have never been written
+         */
+        long read() throws StorageException;
+    }
+
+    @FunctionalInterface
+    interface PropertyLoader {
+
+        Optional<String> load(String key) throws StorageException;
+    }
+
+    private static final long UNKNOWN_VERSION = -1;
+
+    /**
+     * Values are not cached beyond this number of keys, so that lookups of arbitrary keys do not exhaust memory.
+     */
+    private static final int MAX_ENTRIES = 1000;
+
+    private final long checkIntervalNanos;
+
+    private final VersionReader versionReader;
+
+    // Replaced instead of cleared, so that a value loaded concurrently with an invalidation is not cached
+    private volatile ConcurrentHashMap<String, Optional<String>> values = new ConcurrentHashMap<>();
+
+    // Written while holding the lock of this
+    private volatile long version = UNKNOWN_VERSION;
+
+    // Written while holding the lock of this
+    private volatile long nextCheck;
+
+    StoragePropertyCache(Duration checkInterval, VersionReader versionReader) {
+        if (checkInterval.isNegative() || checkInterval.isZero()) {
+            throw new IllegalArgumentException("Check interval of the storage property cache must be positive, got " + checkInterval);
+        }
+        this.checkIntervalNanos = checkInterval.toNanos();
+        this.versionReader = versionReader;
+    }
+
+    Optional<String> get(String key, PropertyLoader loader) throws StorageException {
+        var current = validate();
+        var value = current.get(key);
+        if (value == null) {
+            value = loader.load(key);
+            if (current.size() < MAX_ENTRIES) {
+                current.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Updates the cache after a write of a storage property on this node has been committed.
+     *
+     * @param newVersion the version written together with the property
+     */
+    synchronized void written(String key, String value, long newVersion) {
+        var fresh = new ConcurrentHashMap<String, Optional<String>>();
+        if (version != UNKNOWN_VERSION && newVersion == version + 1) {
+            // No other node has written a property since the last check
+            fresh.putAll(values);
+            version = newVersion;
+        } else {
+            version = UNKNOWN_VERSION;
+        }
+        fresh.put(key, Optional.ofNullable(value));
+        values = fresh;
+    }
+
+    private ConcurrentHashMap<String, Optional<String>> validate() throws StorageException {
+        if (version != UNKNOWN_VERSION && System.nanoTime() - nextCheck < 0) {
+            return values;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (version == UNKNOWN_VERSION || now - nextCheck >= 0) {
+                long latest = versionReader.read();
+                if (latest != version) {
+                    if (version != UNKNOWN_VERSION) {
+                        values = new ConcurrentHashMap<>();
+                    }
+                    version = latest;
+                }
+                nextCheck = now + checkIntervalNanos;
+            }
+            return values;
+        }
+    }
+}
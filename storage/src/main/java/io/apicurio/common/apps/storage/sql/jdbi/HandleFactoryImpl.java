@@ -17,16 +17,57 @@
 package io.apicurio.common.apps.storage.sql.jdbi;
 
 import io.agroal.api.AgroalDataSource;
+import io.quarkus.agroal.DataSource;
+import io.quarkus.arc.Arc;
+import io.apicurio.common.apps.config.Info;
 import io.apicurio.common.apps.storage.exceptions.AlreadyExistsException;
 import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.exceptions.StorageExceptionMapper;
+import io.apicurio.common.apps.storage.exceptions.StorageOverloadedException;
+import io.apicurio.common.apps.storage.exceptions.StorageTimeoutException;
 import io.apicurio.common.apps.storage.sql.BaseSqlStatements;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.MicrometerStorageMetrics;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.SlowQueryLog;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
+import io.apicurio.common.apps.storage.sql.jdbi.query.MappedQuery;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ThreadContext;
+import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 /**
  * @author eric.wittmann@gmail.com
@@ -34,59 +75,654 @@ import javax.inject.Inject;
 @ApplicationScoped
 public class HandleFactoryImpl implements HandleFactory {
 
+    private static final int MAX_CAUSE_DEPTH = 16;
+
     @Inject
     AgroalDataSource dataSource;
 
+    @Inject
+    @Any
+    Instance<AgroalDataSource> dataSources;
+
     @Inject
     BaseSqlStatements sqlStatements;
 
+    @Inject
+    RequestWriteTracker requestWriteTracker;
+
+    @Inject
+    RequestDeadline requestDeadline;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @Inject
+    TransactionManager transactionManager;
+
+    @Inject
+    Logger log;
+
     @Inject
     StorageExceptionMapper exceptionMapper;
 
-    private <R, X extends Exception> R withHandleRaw(HandleCallback<R, X> callback) throws X, StorageException {
-        try (Connection connection = dataSource.getConnection()) {
-            Handle handleImpl = new HandleImpl(connection);
-            return callback.withHandle(handleImpl);
+    @Inject
+    SlowQueryLog slowQueryLog;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.statement-cache.size", defaultValue = "32")
+    @Info(category = "storage", description = "Maximum number of prepared statements cached per database connection checkout. " +
+            "Set to 0 to disable the cache.", availableSince = "0.1.22.Final")
+    int statementCacheSize;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.async.threads")
+    @Info(category = "storage", description = "Number of threads executing asynchronous storage operations. " +
+            "Defaults to the maximum size of the connection pool.", availableSince = "0.1.22.Final")
+    Optional<Integer> asyncThreads;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.async.queue-size", defaultValue = "100")
+    @Info(category = "storage", description = "Maximum number of asynchronous storage operations waiting for a thread. " +
+            "Operations submitted when the queue is full are rejected.", availableSince = "0.1.22.Final")
+    int asyncQueueSize;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.read-only.datasource")
+    @Info(category = "storage", description = "Name of a datasource (e.g. a read replica) used for read-only storage operations. " +
+            "By default, the primary datasource is used for all operations.", availableSince = "0.1.22.Final")
+    Optional<String> readOnlyDataSourceName;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.read-only.read-your-writes-window", defaultValue = "5000")
+    @Info(category = "storage", description = "Time in milliseconds after a write during which read-only operations of the same request " +
+            "use the primary datasource, so that the request can see its own writes. Set to 0 to always use the read-only datasource " +
+            "outside of a transaction that has already used the primary datasource.", availableSince = "0.1.22.Final")
+    long readYourWritesWindow;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.read-only.fallback-period", defaultValue = "10000")
+    @Info(category = "storage", description = "Time in milliseconds during which read-only operations use the primary datasource, " +
+            "after the read-only datasource failed to provide a connection.", availableSince = "0.1.22.Final")
+    long readOnlyFallbackPeriod;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.reuse-thread-handle", defaultValue = "false")
+    @Info(category = "storage", description = "Reuse the connection of an outer storage operation in nested operations on the same thread, " +
+            "when there is no transaction. Nested operations then share the connection state (e.g. auto-commit) and are not isolated. " +
+            "Operations in a transaction always share the connection of the transaction.", availableSince = "0.1.22.Final")
+    boolean reuseThreadHandle;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.metrics.enabled", defaultValue = "true")
+    @Info(category = "storage", description = "Record metrics of the SQL storage layer, if Micrometer is available.", availableSince = "0.1.22.Final")
+    boolean metricsEnabled;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.metrics.max-resources", defaultValue = "100")
+    @Info(category = "storage", description = "Maximum number of distinct resource tag values of the SQL storage metrics. " +
+            "Further resources are recorded as 'other'.", availableSince = "0.1.22.Final")
+    int metricsMaxResources;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.retry.max-attempts", defaultValue = "5")
+    @Info(category = "storage", description = "Maximum number of attempts of a retried storage operation.", availableSince = "0.1.22.Final")
+    int retryMaxAttempts;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.retry.initial-backoff", defaultValue = "10")
+    @Info(category = "storage", description = "Time in milliseconds to wait before the second attempt of a retried storage operation. " +
+            "The time doubles with each further attempt.", availableSince = "0.1.22.Final")
+    long retryInitialBackoff;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.retry.max-backoff", defaultValue = "1000")
+    @Info(category = "storage", description = "Maximum time in milliseconds to wait between attempts of a retried storage operation.", availableSince = "0.1.22.Final")
+    long retryMaxBackoff;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.retry.deadline", defaultValue = "5000")
+    @Info(category = "storage", description = "Time in milliseconds since the first attempt of a retried storage operation, " +
+            "after which no further attempt is started.", availableSince = "0.1.22.Final")
+    long retryDeadline;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.query-cache.max-entries", defaultValue = "10000")
+    @Info(category = "storage", description = "Maximum number of query results cached in memory, for queries that opt in to caching. " +
+            "Set to 0 to disable the cache.", availableSince = "0.1.22.Final")
+    int queryCacheMaxEntries;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.statement-timeout", defaultValue = "0")
+    @Info(category = "storage", description = "Time in milliseconds after which a statement is cancelled, unless the statement sets its own timeout. " +
+            "The timeout is rounded up to whole seconds. Disabled by default (0). When enabled, it applies to every statement, " +
+            "including the ones executed by database upgraders, which must set a longer timeout on long-running statements.",
+            availableSince = "0.1.22.Final")
+    long statementTimeout;
+
+    private final PreparedStatementCache.Stats statementCacheStats = new PreparedStatementCache.Stats();
+
+    private final RetryStats retryStats = new RetryStats();
+
+    RetryPolicy retryPolicy;
+
+    // Null if disabled
+    QueryResultCache queryResultCache;
+
+    StatementTimeouts statementTimeouts = StatementTimeouts.NONE;
+
+    private ScheduledThreadPoolExecutor statementWatchdog;
+
+    private StorageMetrics metrics = StorageMetrics.NOOP;
+
+    // Null if disabled
+    private SlowQueryLog enabledSlowQueryLog;
+
+    // Built from the fields above once they are initialized
+    HandleSettings handleSettings;
+
+    private AgroalDataSource readOnlyDataSource;
+
+    private volatile long readOnlyUnavailableUntil;
+
+    // Handle of the outermost withHandle call on this thread, used when there is no transaction and reuseThreadHandle is enabled
+    private final ThreadLocal<HandleImpl> threadHandle = new ThreadLocal<>();
+
+    private final Object transactionResourceKey = new Object();
+
+    private ThreadPoolExecutor asyncExecutor;
+
+    // The transaction must stay on the thread that started it, everything else (MDC, CDI request context) is propagated
+    private ThreadContext asyncThreadContext;
+
+    @PostConstruct
+    void init() {
+        if (metricsEnabled && isMicrometerAvailable()) {
+            metrics = MicrometerStorageMetrics.create(metricsMaxResources);
+        }
+        if (slowQueryLog.isEnabled()) {
+            enabledSlowQueryLog = slowQueryLog;
+        }
+        retryPolicy = RetryPolicy.exponentialBackoff(retryMaxAttempts, retryInitialBackoff, retryMaxBackoff, retryDeadline);
+        if (queryCacheMaxEntries > 0) {
+            queryResultCache = new QueryResultCache(queryCacheMaxEntries, transactionRegistry);
+        }
+        statementWatchdog = new ScheduledThreadPoolExecutor(1, r -> {
+            var thread = new Thread(r, "sql-storage-statement-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most statements finish before their deadline
+        statementWatchdog.setRemoveOnCancelPolicy(true);
+        statementTimeouts = new StatementTimeouts(Duration.ofMillis(statementTimeout),
+                () -> Arc.container().requestContext().isActive() ? requestDeadline : null, statementWatchdog);
+        handleSettings = HandleSettings.builder()
+                .statementCacheSize(statementCacheSize)
+                .statementCacheStats(statementCacheStats)
+                .metrics(metrics)
+                .slowQueryLog(enabledSlowQueryLog)
+                .queryResultCache(queryResultCache)
+                .statementTimeouts(statementTimeouts)
+                .writeListener(this::recordRequestWrite)
+                .build();
+        readOnlyDataSource = readOnlyDataSourceName
+                .map(name -> dataSources.select(new DataSource.DataSourceLiteral(name)).get())
+                .orElse(null);
+        int threads = asyncThreads.orElseGet(() -> dataSource.getConfiguration().connectionPoolConfiguration().maxSize());
+        var threadCount = new AtomicInteger();
+        asyncExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(asyncQueueSize), r -> {
+                    var thread = new Thread(r, "sql-storage-async-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        asyncExecutor.allowCoreThreadTimeOut(true);
+        asyncThreadContext = ThreadContext.builder()
+                .propagated(ThreadContext.ALL_REMAINING)
+                .cleared(ThreadContext.TRANSACTION)
+                .unchanged()
+                .build();
+    }
+
+    private static boolean isMicrometerAvailable() {
+        try {
+            Class.forName("io.micrometer.core.instrument.MeterRegistry", false, HandleFactoryImpl.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        asyncExecutor.shutdownNow();
+        statementWatchdog.shutdownNow();
+    }
+
+    /**
+     * Executes the callback with a handle on a new connection, which is closed afterwards.
+     *
+     * @param bindToThread if true, nested calls on this thread reuse the handle
+     */
+    private <R, X extends Exception> R withNewHandle(Connection connection, boolean bindToThread, HandleCallback<R, X> callback) throws X, StorageException {
+        try (connection) {
+            HandleImpl handleImpl = new HandleImpl(connection, handleSettings);
+            if (bindToThread) {
+                threadHandle.set(handleImpl);
+            }
+            try {
+                return withHandleMapped(handleImpl, callback);
+            } finally {
+                if (bindToThread) {
+                    threadHandle.remove();
+                }
+                // Cached statements must not outlive the connection checkout
+                handleImpl.clearStatementCache();
+            }
+        } catch (SQLException e) {
+            throw mapException(new StorageException(null, e));
+        }
+    }
+
+    private <R, X extends Exception> R withHandleMapped(HandleImpl handle, HandleCallback<R, X> callback) throws X, StorageException {
+        try {
+            return callback.withHandle(handle);
+        } catch (Exception ex) {
+            if (ex instanceof StorageException) {
+                throw mapException((StorageException) ex);
+            }
+            throw ex;
+        }
+    }
+
+    private StorageException mapException(StorageException ex) {
+        if (ex.isRoot() && ex.getCause() instanceof SQLException) {
+            var sqlEx = (SQLException) ex.getCause();
+            if (sqlStatements.isPrimaryKeyViolation(sqlEx) || sqlStatements.isForeignKeyViolation(sqlEx)) {
+                return new AlreadyExistsException(ex.getContext().orElse(null), sqlEx);
+            }
+        }
+        return ex;
+    }
+
+    /**
+     * Executes the callback with the primary datasource handle bound to the current transaction
+     * (or to the current thread when there is no transaction and {@link #reuseThreadHandle} is enabled), creating it if needed.
+     * A transaction-bound handle is closed when the transaction completes.
+     */
+    private <R, X extends Exception> R withSharedHandle(HandleCallback<R, X> callback) throws X, StorageException {
+        HandleImpl current = getSharedHandle();
+        if (current != null) {
+            return withHandleMapped(current, callback);
+        }
+        if (!isTransactionActive()) {
+            return withNewHandle(getConnection(dataSource), reuseThreadHandle, callback);
+        }
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            // E.g. marked for rollback, the handle can not be closed on completion, because no synchronization can be registered
+            return withNewHandle(getConnection(dataSource), false, callback);
+        }
+        HandleImpl handleImpl = new HandleImpl(getConnection(dataSource), handleSettings);
+        transactionRegistry.putResource(transactionResourceKey, handleImpl);
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    handleImpl.close();
+                } catch (IOException ex) {
+                    log.warn("Could not close a database connection bound to a transaction.", ex);
+                }
+            }
+        });
+        return withHandleMapped(handleImpl, callback);
+    }
+
+    /**
+     * @return the primary datasource handle bound to the current transaction, or to the current thread when there is no transaction
+     */
+    private HandleImpl getSharedHandle() {
+        if (isTransactionActive()) {
+            return (HandleImpl) transactionRegistry.getResource(transactionResourceKey);
+        }
+        return threadHandle.get();
+    }
+
+    /**
+     * @return true if the thread is associated with a transaction in any state,
+     * e.g. also if it is marked for rollback, because the connections are still enlisted in it
+     */
+    private boolean isTransactionActive() {
+        return transactionRegistry.getTransactionStatus() != Status.STATUS_NO_TRANSACTION;
+    }
+
+    private Connection getConnection(AgroalDataSource dataSource) throws StorageException {
+        try {
+            return getConnectionTimed(dataSource);
         } catch (SQLException e) {
             throw new StorageException(null, e);
         }
     }
 
+    private Connection getConnectionTimed(AgroalDataSource dataSource) throws SQLException {
+        long start = metrics.startTimer();
+        var rval = dataSource.getConnection();
+        metrics.recordConnectionAcquired(start);
+        return rval;
+    }
+
+    /**
+     * @return hit/miss counters of the prepared statement caches of all handles created by this factory
+     */
+    public PreparedStatementCache.Stats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * @return hit/miss counters of the query result cache, or empty if the cache is disabled
+     */
+    public Optional<QueryResultCache.Stats> getQueryResultCacheStats() {
+        return Optional.ofNullable(queryResultCache).map(QueryResultCache::getStats);
+    }
+
+    /**
+     * @return counters of the operations retried by {@link #withRetry(RetryPolicy, HandleCallback)}
+     */
+    public RetryStats getRetryStats() {
+        return retryStats;
+    }
+
     @Override
     public <R, X extends Exception> R withHandle(HandleCallback<R, X> callback) throws X, StorageException {
+        return withSharedHandle(callback);
+    }
+
+    /**
+     * Called by the handles when a statement that writes has been executed, reads of the request then use the primary datasource.
+     */
+    private void recordRequestWrite() {
+        if (readOnlyDataSource != null && readYourWritesWindow > 0 && Arc.container().requestContext().isActive()) {
+            requestWriteTracker.recordWrite();
+        }
+    }
+
+    @Override
+    public <R, X extends Exception> R withReadOnlyHandle(HandleCallback<R, X> callback) throws X, StorageException {
+        if (readOnlyDataSource == null || System.currentTimeMillis() < readOnlyUnavailableUntil) {
+            return withSharedHandle(callback);
+        }
+        if (getSharedHandle() != null) {
+            // Already working with the primary, e.g. in a transaction, which may not be visible on the replica yet
+            return withSharedHandle(callback);
+        }
+        if (readYourWritesWindow > 0 && Arc.container().requestContext().isActive()
+                && requestWriteTracker.hasWrittenWithin(readYourWritesWindow)) {
+            return withSharedHandle(callback);
+        }
+        Connection connection;
         try {
-            return withHandleRaw(callback);
-        } catch (StorageException ex) {
-            if (ex.isRoot() && ex.getCause() instanceof SQLException) {
-                var sqlEx = (SQLException) ex.getCause();
-                if (sqlStatements.isPrimaryKeyViolation(sqlEx) || sqlStatements.isForeignKeyViolation(sqlEx)) {
-                    throw new AlreadyExistsException(ex.getContext().orElse(null), sqlEx);
-                } else {
+            connection = getConnectionTimed(readOnlyDataSource);
+        } catch (SQLException ex) {
+            log.warn("Could not get a connection from the read-only datasource '{}', using the primary datasource for the next {} ms.",
+                    readOnlyDataSourceName.get(), readOnlyFallbackPeriod, ex);
+            readOnlyUnavailableUntil = System.currentTimeMillis() + readOnlyFallbackPeriod;
+            return withSharedHandle(callback);
+        }
+        return withNewHandle(connection, false, callback);
+    }
+
+    @Override
+    public <R, X extends Exception> R withRetry(HandleCallback<R, X> callback) throws X, StorageException {
+        return withRetry(retryPolicy, callback);
+    }
+
+    @Override
+    public <R, X extends Exception> R withRetry(RetryPolicy policy, HandleCallback<R, X> callback) throws X, StorageException {
+        long start = System.currentTimeMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                R rval = withHandleInNewTransaction(callback);
+                if (attempt > 1) {
+                    retryStats.recovered.increment();
+                    metrics.recordRetry(StorageMetrics.RETRY_OUTCOME_RECOVERED);
+                }
+                return rval;
+            } catch (Exception ex) {
+                if (!isTransientFailure(ex)) {
+                    throw ex;
+                }
+                long backoff = policy.getBackoffMillis(attempt, System.currentTimeMillis() - start);
+                if (backoff < 0) {
+                    retryStats.exhausted.increment();
+                    metrics.recordRetry(StorageMetrics.RETRY_OUTCOME_EXHAUSTED);
+                    log.warn("Storage operation failed after {} attempts in {} ms.", attempt, System.currentTimeMillis() - start);
+                    throw ex;
+                }
+                retryStats.retried.increment();
+                metrics.recordRetry(StorageMetrics.RETRY_OUTCOME_RETRIED);
+                log.debug("Attempt {} of a storage operation failed with a transient failure, retrying in {} ms.", attempt, backoff, ex);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
                     throw ex;
                 }
-            } else {
-                throw ex;
             }
         }
     }
 
     @Override
-    public <R, X extends Exception> R withHandleNoExceptionMapped(HandleCallback<R, X> callback) {
+    public <T, X extends Exception> Stream<T> withCursor(HandleCallback<MappedQuery<T>, X> callback) throws X, StorageException {
+        Connection connection = getConnectionOutsideTransaction();
+        // Statements and results are not cached, the connection is used by a single query
+        HandleImpl handleImpl = new HandleImpl(connection, handleSettings.toBuilder()
+                .statementCacheSize(0)
+                .queryResultCache(null)
+                .build());
         try {
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException ex) {
+                throw new StorageException(null, ex);
+            }
+            return withHandleMapped(handleImpl, callback).stream()
+                    .onClose(() -> closeCursor(handleImpl));
+        } catch (Exception ex) {
+            closeCursor(handleImpl);
+            throw ex;
+        }
+    }
+
+    /**
+     * Without suspending the transaction of the caller, the pool would enlist the connection in it.
+     */
+    private Connection getConnectionOutsideTransaction() throws StorageException {
+        if (transactionManager == null) {
+            return getConnection(dataSource);
+        }
+        Transaction suspended;
+        try {
+            suspended = transactionManager.suspend();
+        } catch (SystemException ex) {
+            throw new StorageException(null, ex);
+        }
+        try {
+            return getConnection(dataSource);
+        } finally {
+            if (suspended != null) {
+                try {
+                    transactionManager.resume(suspended);
+                } catch (Exception ex) {
+                    log.error("Could not resume a suspended transaction.", ex);
+                }
+            }
+        }
+    }
+
+    private void closeCursor(HandleImpl handleImpl) {
+        try {
+            var connection = handleImpl.getConnection();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            log.warn("Could not end the transaction of a cursor.", ex);
+        } finally {
+            try {
+                handleImpl.close();
+            } catch (IOException ex) {
+                log.warn("Could not close the database connection of a cursor.", ex);
+            }
+        }
+    }
+
+    /**
+     * @return true if the exception, or one of its causes, is an {@link SQLException} that represents a transient failure
+     */
+    private boolean isTransientFailure(Throwable ex) {
+        // Bounded, because a chain of causes may contain a cycle
+        Throwable cause = ex;
+        for (int depth = 0; cause != null && depth < MAX_CAUSE_DEPTH; depth++, cause = cause.getCause()) {
+            if (cause instanceof StorageTimeoutException) {
+                // Retrying would exceed the deadline again
+                return false;
+            }
+            if (cause instanceof SQLException && sqlStatements.isTransientFailure((SQLException) cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes the callback in a new transaction, suspending the transaction of the caller, if any.
+     * Without a transaction manager, the callback is executed in auto-commit mode.
+     */
+    private <R, X extends Exception> R withHandleInNewTransaction(HandleCallback<R, X> callback) throws X, StorageException {
+        if (transactionManager == null) {
             return withHandle(callback);
-        } catch (StorageException ex) {
-            if (ex.isRoot() && ex.getCause() instanceof SQLException) {
-                var sqlEx = (SQLException) ex.getCause();
-                if (sqlStatements.isPrimaryKeyViolation(sqlEx) || sqlStatements.isForeignKeyViolation(sqlEx)) {
-                    throw exceptionMapper.map(new AlreadyExistsException(ex.getContext().orElse(null), sqlEx));
-                } else {
-                    throw exceptionMapper.map(ex);
+        }
+        Transaction suspended;
+        try {
+            suspended = transactionManager.suspend();
+        } catch (SystemException ex) {
+            throw new StorageException(null, ex);
+        }
+        try {
+            transactionManager.begin();
+            R rval;
+            try {
+                rval = withHandle(callback);
+            } catch (Exception ex) {
+                try {
+                    transactionManager.rollback();
+                } catch (Exception rollbackEx) {
+                    // Do not hide the failure of the callback
+                    ex.addSuppressed(rollbackEx);
                 }
-            } else {
-                throw exceptionMapper.map(ex);
+                throw ex;
             }
+            transactionManager.commit();
+            return rval;
+        } catch (NotSupportedException | SystemException | RollbackException | HeuristicMixedException | HeuristicRollbackException ex) {
+            throw new StorageException(null, ex);
+        } finally {
+            if (suspended != null) {
+                try {
+                    transactionManager.resume(suspended);
+                } catch (Exception ex) {
+                    log.error("Could not resume a suspended transaction.", ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public <R, X extends Exception> CompletionStage<R> withHandleAsync(HandleCallback<R, X> callback) {
+        Callable<R> task = asyncThreadContext.contextualCallable(() -> withHandle(callback));
+        var rval = new CompletableFuture<R>();
+        try {
+            asyncExecutor.execute(() -> {
+                try {
+                    rval.complete(task.call());
+                } catch (Throwable ex) {
+                    rval.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rval.completeExceptionally(new StorageOverloadedException("Too many storage operations are waiting to be executed " +
+                    "(" + asyncExecutor.getQueue().size() + " queued on " + asyncExecutor.getMaximumPoolSize() + " threads).", null));
+        }
+        return rval;
+    }
+
+    /**
+     * Same as {@link #withHandleAsync(HandleCallback)}. The callback is submitted when the Uni is subscribed to.
+     * <p>
+     * Not part of {@link HandleFactory}, so that its users do not depend on Mutiny, which is always present in Quarkus.
+     */
+    public <R, X extends Exception> Uni<R> withHandleUni(HandleCallback<R, X> callback) {
+        return Uni.createFrom().completionStage(() -> withHandleAsync(callback));
+    }
+
+    @Override
+    public <R, X extends Exception> R withHandleNoExceptionMapped(HandleCallback<R, X> callback) {
+        try {
+            return withHandle(callback);
         } catch (Exception ex) {
-            throw exceptionMapper.map(new StorageException(null, ex));
+            throw mapToRuntimeException(ex);
+        }
+    }
+
+    @Override
+    public <R, X extends Exception> R withReadOnlyHandleNoExceptionMapped(HandleCallback<R, X> callback) {
+        try {
+            return withReadOnlyHandle(callback);
+        } catch (Exception ex) {
+            throw mapToRuntimeException(ex);
+        }
+    }
+
+    private RuntimeException mapToRuntimeException(Exception ex) {
+        if (ex instanceof StorageException) {
+            return exceptionMapper.map(mapException((StorageException) ex));
+        }
+        return exceptionMapper.map(new StorageException(null, ex));
+    }
+
+    public static class RetryStats {
+
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder recovered = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        /**
+         * @return number of failed attempts that were followed by another attempt
+         */
+        public long getRetried() {
+            return retried.sum();
+        }
+
+        /**
+         * @return number of operations that succeeded after they had been retried
+         */
+        public long getRecovered() {
+            return recovered.sum();
+        }
+
+        /**
+         * @return number of operations that failed because the retry policy gave up
+         */
+        public long getExhausted() {
+            return exhausted.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "HandleFactoryImpl.RetryStats [retried=" + getRetried() + ", recovered=" + getRecovered() + ", exhausted=" + getExhausted() + "]";
         }
     }
 }
@@ -16,14 +16,28 @@
 
 package io.apicurio.common.apps.storage.sql.jdbi;
 
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.SlowQueryLog;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
+import io.apicurio.common.apps.storage.sql.jdbi.parse.DdlParser;
+import io.apicurio.common.apps.storage.sql.jdbi.query.Batch;
+import io.apicurio.common.apps.storage.sql.jdbi.query.BatchImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.query.BulkLoad;
+import io.apicurio.common.apps.storage.sql.jdbi.query.BulkLoadImpl;
 import io.apicurio.common.apps.storage.sql.jdbi.query.Query;
+import io.apicurio.common.apps.storage.sql.jdbi.query.Sql;
 import io.apicurio.common.apps.storage.sql.jdbi.query.QueryImpl;
 import io.apicurio.common.apps.storage.sql.jdbi.query.Update;
 import io.apicurio.common.apps.storage.sql.jdbi.query.UpdateImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParams;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author eric.wittmann@gmail.com
@@ -32,25 +46,129 @@ public class HandleImpl implements Handle {
 
     private final Connection connection;
 
+    private final PreparedStatementCache statementCache;
+
+    private final StorageMetrics metrics;
+
+    private final SlowQueryLog slowQueryLog;
+
+    private final QueryResultCache queryResultCache;
+
+    private final StatementTimeouts statementTimeouts;
+
+    private final Runnable writeListener;
+
     /**
      * Constructor.
      *
      * @param connection a DB connection
+     * @param settings   settings of the handle, see {@link HandleSettings}
      */
-    public HandleImpl(Connection connection) {
+    public HandleImpl(Connection connection, HandleSettings settings) {
         this.connection = connection;
+        this.statementCache = new PreparedStatementCache(connection, settings.getStatementCacheSize(), settings.getStatementCacheStats());
+        this.metrics = settings.getMetrics();
+        this.slowQueryLog = settings.getSlowQueryLog();
+        this.queryResultCache = settings.getQueryResultCache();
+        this.statementTimeouts = settings.getStatementTimeouts();
+        this.writeListener = settings.getWriteListener();
     }
 
     public Connection getConnection() {
         return connection;
     }
 
+    public StorageMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the start time of a statement execution, to be passed to the metrics and {@link #recordSlowQuery}
+     */
+    public long startTimer() {
+        return slowQueryLog != null ? System.nanoTime() : metrics.startTimer();
+    }
+
+    /**
+     * Records the statement execution in the slow query log, if enabled and the execution took longer than the threshold.
+     *
+     * @param operation one of the {@code OPERATION_*} constants of {@link StorageMetrics}
+     */
+    public void recordSlowQuery(String sql, SqlParams parameters, Map<String, String> context, String operation, long startTime, long rows) {
+        if (slowQueryLog != null) {
+            slowQueryLog.record(sql, parameters, context, operation, startTime, rows);
+        }
+    }
+
+    /**
+     * Records the statement execution in the slow query log, if enabled and the execution took longer than the threshold.
+     *
+     * @param parameterTypes types of the parameters, when the parameters themselves are no longer available
+     * @param operation      one of the {@code OPERATION_*} constants of {@link StorageMetrics}
+     */
+    public void recordSlowQuery(String sql, List<String> parameterTypes, Map<String, String> context, String operation, long startTime, long rows) {
+        if (slowQueryLog != null) {
+            slowQueryLog.record(sql, parameterTypes, context, operation, startTime, rows);
+        }
+    }
+
+    /**
+     * @return the cache of query results, or null if disabled
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    public StatementTimeouts getStatementTimeouts() {
+        return statementTimeouts;
+    }
+
+    /**
+     * Records that a statement that writes has been executed on this handle. Invalidates the cached query results
+     * that depend on the resource written by the statement, i.e. the value of the {@link Sql#RESOURCE_CONTEXT_KEY} context
+     * of the statement, if any, and notifies the {@code writeListener} of the {@link HandleSettings}.
+     */
+    public void recordWrite(Map<String, String> context) {
+        writeListener.run();
+        if (queryResultCache != null) {
+            String resource = context.get(Sql.RESOURCE_CONTEXT_KEY);
+            if (resource != null) {
+                queryResultCache.invalidate(resource);
+            }
+        }
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, reusing a cached one if available.
+     * The statement must be given back using {@link #releaseStatement(String, PreparedStatement)}
+     * or {@link #discardStatement(PreparedStatement)}.
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return statementCache.acquire(sql);
+    }
+
+    public void releaseStatement(String sql, PreparedStatement statement) throws SQLException {
+        statementCache.release(sql, statement);
+    }
+
+    public void discardStatement(PreparedStatement statement) {
+        statementCache.discard(statement);
+    }
+
+    /**
+     * Closes the cached prepared statements, should be called before the connection is returned to the pool.
+     */
+    public void clearStatementCache() {
+        statementCache.clear();
+    }
+
     /**
      * @see java.io.Closeable#close()
      */
     @Override
     public void close() throws IOException {
         try {
+            clearStatementCache();
             this.connection.close();
         } catch (SQLException e) {
             throw new IOException(e);
@@ -62,7 +180,7 @@ public class HandleImpl implements Handle {
      */
     @Override
     public Query createQuery(String sql) {
-        return new QueryImpl(connection, sql);
+        return new QueryImpl(this, sql);
     }
 
     /**
@@ -70,6 +188,64 @@ public class HandleImpl implements Handle {
      */
     @Override
     public Update createUpdate(String sql) {
-        return new UpdateImpl(connection, sql);
+        return new UpdateImpl(this, sql);
+    }
+
+    /**
+     * @see io.apicurio.common.apps.storage.sql.jdbi.Handle#createBatch()
+     */
+    @Override
+    public Batch createBatch() {
+        return new BatchImpl(this);
+    }
+
+    /**
+     * @see io.apicurio.common.apps.storage.sql.jdbi.Handle#createBulkLoad(java.lang.String, java.lang.String...)
+     */
+    @Override
+    public BulkLoad createBulkLoad(String table, String... columns) {
+        return new BulkLoadImpl(this, table, columns);
+    }
+
+    /**
+     * The statement is not kept in the statement cache of this handle,
+     * the driver keeps its server-side prepared statement after this one is closed.
+     *
+     * @see io.apicurio.common.apps.storage.sql.jdbi.Handle#warmUp(java.lang.String, int)
+     */
+    @Override
+    public void warmUp(String sql, int executions) throws StorageException {
+        try (var statement = connection.prepareStatement(sql)) {
+            // Reading the parameter metadata makes the driver describe the statement to the database
+            int[] types = parameterTypes(statement);
+            if (!DdlParser.isQuery(sql)) {
+                // Not executed, so that it does not take locks or fire triggers
+                return;
+            }
+            for (int i = 0; i < executions; i++) {
+                for (int p = 0; p < types.length; p++) {
+                    statement.setNull(p + 1, types[p]);
+                }
+                statement.execute();
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Failed to warm up statement: " + sql, Map.of(), e);
+        }
+    }
+
+    /**
+     * Types of the parameters as inferred by the database, so that the warm-up binds them in the same way as the application.
+     */
+    private static int[] parameterTypes(PreparedStatement statement) throws SQLException {
+        var metadata = statement.getParameterMetaData();
+        var types = new int[metadata.getParameterCount()];
+        for (int p = 0; p < types.length; p++) {
+            try {
+                types[p] = metadata.getParameterType(p + 1);
+            } catch (SQLException ex) {
+                types[p] = Types.NULL;
+            }
+        }
+        return types;
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.SlowQueryLog;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings of a {@link HandleImpl}, shared by the handles created by a {@link HandleFactoryImpl}.
+ * The defaults disable every optional feature.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@Builder(toBuilder = true)
+@Getter
+public class HandleSettings {
+
+    /**
+     * Maximum number of prepared statements cached for the connection of a handle, 0 to disable the cache.
+     */
+    @Builder.Default
+    private final int statementCacheSize = 0;
+
+    /**
+     * Counters of the prepared statement cache.
+     */
+    @Builder.Default
+    private final PreparedStatementCache.Stats statementCacheStats = new PreparedStatementCache.Stats();
+
+    /**
+     * Recorder of statement metrics.
+     */
+    @Builder.Default
+    private final StorageMetrics metrics = StorageMetrics.NOOP;
+
+    /**
+     * Log of slow statements, or null if disabled.
+     */
+    private final SlowQueryLog slowQueryLog;
+
+    /**
+     * Cache of query results shared between handles, or null if disabled.
+     */
+    private final QueryResultCache queryResultCache;
+
+    /**
+     * Limits the time statements may run.
+     */
+    @Builder.Default
+    private final StatementTimeouts statementTimeouts = StatementTimeouts.NONE;
+
+    /**
+     * Called after an update, a batch or a bulk load has been executed on a handle.
+     */
+    @Builder.Default
+    private final Runnable writeListener = () -> {
+    };
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of prepared statements for a single connection, keyed by the SQL text.
+ * <p>
+ * A statement is checked out of the cache while it is being used, so two queries with the same SQL
+ * that are open at the same time (e.g. a nested query while a stream is being consumed) each get their own statement.
+ * Statements are returned to the cache when released, and closed when evicted or when the cache is cleared.
+ * <p>
+ * This class is not thread-safe, in the same way a JDBC connection is not meant to be shared between threads.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class PreparedStatementCache {
+
+    private final Connection connection;
+
+    private final int maxSize;
+
+    private final Stats stats;
+
+    private final Map<String, PreparedStatement> idle;
+
+    /**
+     * @param connection a DB connection
+     * @param maxSize    maximum number of idle statements kept, 0 disables caching
+     * @param stats      counters shared between caches, so they can be observed in aggregate
+     */
+    public PreparedStatementCache(Connection connection, int maxSize, Stats stats) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.idle = new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > PreparedStatementCache.this.maxSize) {
+                    closeQuietly(eldest.getValue());
+                    stats.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the given SQL, or prepares a new one.
+     * The statement must be given back using {@link #release(String, PreparedStatement)}
+     * or {@link #discard(PreparedStatement)}.
+     */
+    public PreparedStatement acquire(String sql) throws SQLException {
+        if (maxSize > 0) {
+            PreparedStatement statement = idle.remove(sql);
+            if (statement != null && !statement.isClosed()) {
+                stats.hits.increment();
+                return statement;
+            }
+        }
+        stats.misses.increment();
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Returns the statement to the cache so it can be reused by a subsequent query with the same SQL.
+     * The caller must have already closed any result set produced by the statement.
+     */
+    public void release(String sql, PreparedStatement statement) throws SQLException {
+        if (maxSize <= 0 || statement.isClosed()) {
+            statement.close();
+            return;
+        }
+        statement.clearParameters();
+        PreparedStatement previous = idle.put(sql, statement);
+        if (previous != null && previous != statement) {
+            closeQuietly(previous);
+        }
+    }
+
+    /**
+     * Closes the statement without returning it to the cache, e.g. after it failed.
+     */
+    public void discard(PreparedStatement statement) {
+        closeQuietly(statement);
+    }
+
+    /**
+     * Closes all idle statements. Statements that are currently checked out are not affected.
+     */
+    public void clear() {
+        var statements = new ArrayList<>(idle.values());
+        idle.clear();
+        statements.forEach(PreparedStatementCache::closeQuietly);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ex) {
+            // Ignored, the statement is not usable anymore anyway
+        }
+    }
+
+    /**
+     * Hit/miss counters of prepared statement caches, used to size the cache.
+     */
+    public static class Stats {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "PreparedStatementCache.Stats [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+        }
+    }
+}
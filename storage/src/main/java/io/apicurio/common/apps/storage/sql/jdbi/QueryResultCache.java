@@ -0,0 +1,276 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Bounded cache of mapped query results, shared by all handles of a {@link HandleFactoryImpl},
+ * see {@link io.apicurio.common.apps.storage.sql.jdbi.query.Query#cached(String, java.time.Duration, String...)}.
+ * <p>
+ * Every cached result has a set of tags. A write of a resource (an update with the
+ * {@link io.apicurio.common.apps.storage.sql.jdbi.query.Sql#RESOURCE_CONTEXT_KEY} context) increments the generation
+ * of the tag with the same name, which invalidates the results cached with an earlier generation.
+ * <p>
+ * When the write is part of a transaction, results with the tag are neither served nor cached until the transaction completes,
+ * and the generation is incremented again afterwards, so that uncommitted data is never cached.
+ * Writes of other nodes are not seen, so a cached result can be stale for at most its time-to-live.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class QueryResultCache {
+
+    @FunctionalInterface
+    public interface Loader<R> {
+
+        R load() throws StorageException;
+    }
+
+    private final int maxEntries;
+
+    // Null if writes are never part of a transaction
+    private final TransactionSynchronizationRegistry transactionRegistry;
+
+    private final Stats stats = new Stats();
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    // Tags are resource names, the number of distinct tags is expected to be small
+    private final ConcurrentHashMap<String, TagState> tags = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxEntries          maximum number of cached results
+     * @param transactionRegistry used to delay caching until the transactions that write a tag complete, may be null
+     */
+    public QueryResultCache(int maxEntries, TransactionSynchronizationRegistry transactionRegistry) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of cached query results must be positive, got " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.transactionRegistry = transactionRegistry;
+    }
+
+    /**
+     * Returns the cached result of the query, or loads and caches it.
+     *
+     * @param key      identifies the query, including the SQL, the parameters, and how the result is mapped
+     * @param ttlNanos time-to-live of the result
+     * @param tags     tags of the result
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(Key key, long ttlNanos, String[] tags, Loader<R> loader) throws StorageException {
+        long now = System.nanoTime();
+        var entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.expiresAt < 0 && entry.isCurrent()) {
+                stats.hits.increment();
+                return (R) entry.value;
+            }
+            entries.remove(key, entry);
+        }
+        stats.misses.increment();
+        // Taken before the query is executed, so that a write while it is executed invalidates the result
+        var states = new TagState[tags.length];
+        var generations = new long[tags.length];
+        boolean cacheable = true;
+        for (int i = 0; i < tags.length; i++) {
+            states[i] = tagState(tags[i]);
+            generations[i] = states[i].generation.get();
+            cacheable &= states[i].pendingWrites.get() == 0;
+        }
+        R value = loader.load();
+        if (cacheable) {
+            if (entries.size() >= maxEntries) {
+                evict(now);
+            }
+            entries.put(key, new Entry(value, now + ttlNanos, states, generations));
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates the results with the tag, after the resource with the same name has been written.
+     */
+    public void invalidate(String tag) {
+        var state = tagState(tag);
+        state.generation.incrementAndGet();
+        if (transactionRegistry == null || transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        var written = (Set<TagState>) transactionRegistry.getResource(this);
+        if (written == null) {
+            var tagsWritten = new HashSet<TagState>();
+            transactionRegistry.putResource(this, tagsWritten);
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    for (var s : tagsWritten) {
+                        s.generation.incrementAndGet();
+                        s.pendingWrites.decrementAndGet();
+                    }
+                }
+            });
+            written = tagsWritten;
+        }
+        if (written.add(state)) {
+            state.pendingWrites.incrementAndGet();
+        }
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    private TagState tagState(String tag) {
+        return tags.computeIfAbsent(tag, t -> new TagState());
+    }
+
+    /**
+     * Removes the expired and invalidated results, and arbitrary results if the cache is still full.
+     */
+    private synchronized void evict(long now) {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+        entries.values().removeIf(e -> now - e.expiresAt >= 0 || !e.isCurrent());
+        var it = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            stats.evictions.increment();
+        }
+    }
+
+    public static class Key {
+
+        private final String sql;
+        private final Object parameters;
+        private final Class<?> mapper;
+        private final String name;
+        private final String operation;
+        private final int hash;
+
+        /**
+         * @param parameters see {@link io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParams#cacheKey()}
+         * @param mapper     class of the row mapper
+         * @param name       key given by the caller, which identifies how the rows are mapped,
+         *                   because instances of the same mapper class (e.g. lambdas) may map rows differently
+         * @param operation  name of the method of the mapped query that produced the result
+         */
+        public Key(String sql, Object parameters, Class<?> mapper, String name, String operation) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.mapper = mapper;
+            this.name = name;
+            this.operation = operation;
+            this.hash = Objects.hash(sql, parameters, mapper, name, operation);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && sql.equals(other.sql) && parameters.equals(other.parameters)
+                    && mapper == other.mapper && name.equals(other.name) && operation.equals(other.operation);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Entry {
+
+        final Object value;
+        final long expiresAt;
+        final TagState[] tags;
+        final long[] generations;
+
+        Entry(Object value, long expiresAt, TagState[] tags, long[] generations) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.tags = tags;
+            this.generations = generations;
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < tags.length; i++) {
+                if (tags[i].generation.get() != generations[i] || tags[i].pendingWrites.get() != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class TagState {
+
+        final AtomicLong generation = new AtomicLong();
+
+        // Number of active transactions that have written the resource
+        final AtomicInteger pendingWrites = new AtomicInteger();
+    }
+
+    public static class Stats {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return number of valid results removed because the cache was full
+         */
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "QueryResultCache.Stats [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+        }
+    }
+}
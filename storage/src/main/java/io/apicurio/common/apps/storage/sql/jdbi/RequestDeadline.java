@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import java.time.Duration;
+import javax.enterprise.context.RequestScoped;
+
+/**
+ * Time budget of the current request for storage operations.
+ * Statements executed after the deadline has been set run for at most the remaining time, see {@link StatementTimeouts}.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@RequestScoped
+public class RequestDeadline {
+
+    private volatile boolean isSet;
+
+    // Value of System.nanoTime()
+    private volatile long deadline;
+
+    /**
+     * Set the deadline to the given time from now.
+     */
+    public void setBudget(Duration budget) {
+        deadline = System.nanoTime() + budget.toNanos();
+        isSet = true;
+    }
+
+    public void clear() {
+        isSet = false;
+    }
+
+    public boolean isSet() {
+        return isSet;
+    }
+
+    /**
+     * @return remaining time in nanoseconds, negative if the deadline has passed, undefined if the deadline is not set
+     */
+    public long remainingNanos() {
+        return deadline - System.nanoTime();
+    }
+}
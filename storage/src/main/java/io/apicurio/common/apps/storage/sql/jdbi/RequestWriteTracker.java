@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import javax.enterprise.context.RequestScoped;
+
+/**
+ * Remembers when the current request last used a read-write handle,
+ * so that subsequent reads of the same request can be routed to the primary datasource.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@RequestScoped
+public class RequestWriteTracker {
+
+    private volatile long lastWrite;
+
+    public void recordWrite() {
+        lastWrite = System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if a write happened within the given number of milliseconds
+     */
+    public boolean hasWrittenWithin(long window) {
+        return lastWrite != 0 && System.currentTimeMillis() - lastWrite < window;
+    }
+}
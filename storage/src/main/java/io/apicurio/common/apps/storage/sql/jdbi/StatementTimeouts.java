@@ -0,0 +1,180 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.apicurio.common.apps.storage.exceptions.StorageTimeoutException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limits the time a statement may run.
+ * <p>
+ * The statement timeout (the default one, or the one set on the statement) is passed to the driver
+ * using {@link Statement#setQueryTimeout(int)}, rounded up to whole seconds.
+ * If the current request has a {@link RequestDeadline} that expires before the statement timeout,
+ * the statement is cancelled using {@link Statement#cancel()} when the deadline expires,
+ * and a statement is not executed at all if the deadline has already expired.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class StatementTimeouts {
+
+    public static final StatementTimeouts NONE = new StatementTimeouts(Duration.ZERO, () -> null, null);
+
+    /**
+     * SQL state of a statement cancelled by a timeout or {@link Statement#cancel()}, in both PostgreSQL and H2.
+     */
+    private static final String QUERY_CANCELED_SQL_STATE = "57014";
+
+    private final long defaultTimeoutMillis;
+
+    private final Supplier<RequestDeadline> deadlineSupplier;
+
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * @param defaultTimeout   timeout of statements that do not set their own, {@link Duration#ZERO} for none
+     * @param deadlineSupplier returns the deadline of the current request, or null if there is none
+     * @param watchdog         cancels statements that exceed the deadline
+     */
+    public StatementTimeouts(Duration defaultTimeout, Supplier<RequestDeadline> deadlineSupplier, ScheduledExecutorService watchdog) {
+        this.defaultTimeoutMillis = defaultTimeout.toMillis();
+        this.deadlineSupplier = deadlineSupplier;
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Applies the timeout to the statement, which is about to be executed.
+     * The returned watch must be stopped when the execution is finished.
+     *
+     * @param timeout timeout set on the statement, or null to use the default timeout
+     */
+    public Watch start(Statement statement, Duration timeout, Map<String, String> context) throws SQLException, StorageTimeoutException {
+        long timeoutMillis = timeout != null ? timeout.toMillis() : defaultTimeoutMillis;
+        // A cached statement may still have the timeout of a previous query, but it is only set if it differs,
+        // because H2 applies it with a SET command, which makes the database re-parse all of its prepared statements
+        int timeoutSeconds = timeoutMillis > 0 ? (int) Math.min(Integer.MAX_VALUE, (timeoutMillis + 999) / 1000) : 0;
+        if (statement.getQueryTimeout() != timeoutSeconds) {
+            statement.setQueryTimeout(timeoutSeconds);
+        }
+        var deadline = deadlineSupplier.get();
+        if (deadline == null || !deadline.isSet()) {
+            return Watch.NONE;
+        }
+        long remaining = deadline.remainingNanos();
+        if (remaining <= 0) {
+            throw new StorageTimeoutException("The deadline of the request has expired before the statement was executed.", context);
+        }
+        if (watchdog == null || timeoutMillis > 0 && TimeUnit.MILLISECONDS.toNanos(timeoutMillis) <= remaining) {
+            return Watch.NONE;
+        }
+        var watch = new Watch(statement);
+        watch.future = watchdog.schedule(watch, remaining, TimeUnit.NANOSECONDS);
+        return watch;
+    }
+
+    /**
+     * Same as {@link #start(Statement, Duration, Map)}, for operations that are not executed with a {@link Statement},
+     * e.g. {@code COPY} on PostgreSQL, and apply the timeout themselves.
+     * There is no statement to cancel, so the remaining time of the request deadline is included in the returned timeout.
+     *
+     * @param timeout timeout set on the operation, or null to use the default timeout
+     * @return timeout in milliseconds, 0 for none
+     */
+    public long timeoutMillis(Duration timeout, Map<String, String> context) throws StorageTimeoutException {
+        long timeoutMillis = timeout != null ? timeout.toMillis() : defaultTimeoutMillis;
+        var deadline = deadlineSupplier.get();
+        if (deadline == null || !deadline.isSet()) {
+            return timeoutMillis;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos());
+        if (remainingMillis <= 0) {
+            throw new StorageTimeoutException("The deadline of the request has expired before the statement was executed.", context);
+        }
+        return timeoutMillis > 0 ? Math.min(timeoutMillis, remainingMillis) : remainingMillis;
+    }
+
+    /**
+     * @return a {@link StorageTimeoutException} if the statement failed because it timed out or was cancelled by the watch,
+     * null otherwise
+     */
+    public static StorageTimeoutException timeoutException(SQLException e, Watch watch, Map<String, String> context) {
+        if (watch.isCancelled()) {
+            return new StorageTimeoutException("The statement was cancelled, because the deadline of the request has expired.", context, e);
+        }
+        if (e instanceof SQLTimeoutException || QUERY_CANCELED_SQL_STATE.equals(e.getSQLState())) {
+            return new StorageTimeoutException("The statement was cancelled, because it exceeded its timeout.", context, e);
+        }
+        return null;
+    }
+
+    /**
+     * Cancels a statement when the deadline of the request expires.
+     */
+    public static class Watch implements Runnable {
+
+        public static final Watch NONE = new Watch(null);
+
+        private final Statement statement;
+
+        private ScheduledFuture<?> future;
+
+        // Guarded by this
+        private boolean stopped;
+
+        private volatile boolean cancelled;
+
+        private Watch(Statement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public synchronized void run() {
+            // After the watch is stopped, the statement may be executing another query
+            if (!stopped) {
+                cancelled = true;
+                try {
+                    statement.cancel();
+                } catch (SQLException ex) {
+                    // The statement fails with a timeout anyway, or it has already finished
+                }
+            }
+        }
+
+        public void stop() {
+            if (this == NONE) {
+                return;
+            }
+            synchronized (this) {
+                stopped = true;
+            }
+            future.cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -3,13 +3,54 @@ package io.apicurio.common.apps.storage.sql.jdbi.mappers;
 import io.apicurio.common.apps.content.handle.ContentHandle;
 import io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper;
 
+import java.io.IOException;
+import java.sql.Blob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import javax.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class ContentHandleMapper implements RowMapper<ContentHandle> {
 
+    private static final RowMapper<ContentHandle> STREAMING = new RowMapper<>() {
+
+        @Override
+        public boolean supports(Class<?> klass) {
+            return false;
+        }
+
+        @Override
+        public ContentHandle map(ResultSet rs) throws SQLException {
+            if (rs.getMetaData().getColumnType(1) != Types.BLOB) {
+                // The driver has already read the value into memory
+                return ContentHandle.create(rs.getBytes(1));
+            }
+            Blob blob = rs.getBlob(1);
+            if (blob == null) {
+                return ContentHandle.create((byte[]) null);
+            }
+            return ContentHandle.create(() -> {
+                try {
+                    return blob.getBinaryStream();
+                } catch (SQLException ex) {
+                    throw new IOException(ex);
+                }
+            }, blob.length());
+        }
+    };
+
+    /**
+     * Maps a {@code BLOB} column to a content handle that reads the value from the database
+     * only when the content is used. The content must be used while the handle that executed the query is open,
+     * and the value of a column of another type is read into memory as usual.
+     * <p>
+     * Use with {@code Query.map(ContentHandleMapper.streaming())}.
+     */
+    public static RowMapper<ContentHandle> streaming() {
+        return STREAMING;
+    }
+
     @Override
     public boolean supports(Class<?> klass) {
         return ContentHandle.class.equals(klass);
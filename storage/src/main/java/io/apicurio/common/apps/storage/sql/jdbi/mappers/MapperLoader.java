@@ -2,24 +2,92 @@ package io.apicurio.common.apps.storage.sql.jdbi.mappers;
 
 import io.quarkus.runtime.StartupEvent;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
+/**
+ * Resolves the {@link RowMapper} for a given class.
+ * <p>
+ * The mappers are collected once at startup. The mapper for a class is looked up on first use
+ * and then remembered for that class, so subsequent lookups are a single lock-free read.
+ * Startup fails if two mappers support the same declared type.
+ */
 @ApplicationScoped
 public class MapperLoader {
 
     @Inject
     Instance<RowMapper<?>> mappers;
 
+    private volatile List<RowMapper<?>> mapperList;
+
+    private final ClassValue<Optional<RowMapper<?>>> registry = new ClassValue<>() {
+        @Override
+        protected Optional<RowMapper<?>> computeValue(Class<?> klass) {
+            List<RowMapper<?>> supporting = getMappers().stream()
+                    .filter(mapper -> mapper.supports(klass))
+                    .collect(Collectors.toList());
+            if (supporting.size() > 1) {
+                throw new IllegalStateException("Multiple row mappers support " + klass + ": " + describe(supporting));
+            }
+            return supporting.stream().findFirst();
+        }
+    };
+
     void init(@Observes StartupEvent ev) {
+        mapperList = mappers.stream().collect(Collectors.toUnmodifiableList());
+        // Detect conflicts at boot, and pre-populate the registry for the declared types
+        for (RowMapper<?> mapper : mapperList) {
+            resolveTargetType(mapper.getClass()).ifPresent(registry::get);
+        }
         MapperLoaderHolder.getInstance().setMapperLoader(this);
     }
 
     public List<RowMapper<?>> getMappers() {
-        return mappers.stream().collect(Collectors.toList());
+        var rval = mapperList;
+        if (rval == null) {
+            rval = mappers.stream().collect(Collectors.toUnmodifiableList());
+            mapperList = rval;
+        }
+        return rval;
+    }
+
+    /**
+     * @return the mapper that supports the given class, if any
+     * @throws IllegalStateException if multiple mappers support the class
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<RowMapper<T>> getMapper(Class<T> klass) {
+        return registry.get(klass).map(mapper -> (RowMapper<T>) mapper);
+    }
+
+    /**
+     * Finds T in {@code RowMapper<T>} implemented by the class or one of its superclasses
+     * (mapper beans may be represented by a generated subclass).
+     */
+    private static Optional<Class<?>> resolveTargetType(Class<?> klass) {
+        for (Class<?> c = klass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Type type : c.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == RowMapper.class) {
+                    Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+                    if (argument instanceof Class) {
+                        return Optional.of((Class<?>) argument);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static String describe(List<RowMapper<?>> mappers) {
+        return mappers.stream()
+                .map(mapper -> mapper.getClass().getName())
+                .collect(Collectors.joining(", "));
     }
 }
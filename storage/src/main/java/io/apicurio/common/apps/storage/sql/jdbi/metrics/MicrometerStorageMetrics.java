@@ -0,0 +1,178 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.metrics;
+
+import io.apicurio.common.apps.storage.sql.jdbi.query.Sql;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records storage metrics using Micrometer.
+ * <p>
+ * Only reference this class after checking that Micrometer is on the classpath.
+ * The number of distinct resource tag values is limited, further resources are recorded as {@value #OTHER_RESOURCE}.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class MicrometerStorageMetrics implements StorageMetrics {
+
+    private static final String PREFIX = "apicurio.storage.";
+
+    private static final String NO_RESOURCE = "none";
+    private static final String OTHER_RESOURCE = "other";
+
+    private final MeterRegistry registry;
+
+    private final int maxResources;
+
+    private final Timer connectionAcquire;
+
+    private final Map<String, ResourceMeters> resources = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> retries = new ConcurrentHashMap<>();
+
+    public MicrometerStorageMetrics(MeterRegistry registry, int maxResources) {
+        this.registry = registry;
+        this.maxResources = maxResources;
+        this.connectionAcquire = Timer.builder(PREFIX + "connection.acquire")
+                .description("Time spent waiting for a database connection from the pool")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+
+    /**
+     * @return metrics recorded in the global registry, to which Quarkus adds the configured registries
+     */
+    public static MicrometerStorageMetrics create(int maxResources) {
+        return new MicrometerStorageMetrics(Metrics.globalRegistry, maxResources);
+    }
+
+    @Override
+    public long startTimer() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void recordConnectionAcquired(long startTime) {
+        connectionAcquire.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordExecution(Map<String, String> context, String operation, long startTime) {
+        long duration = System.nanoTime() - startTime;
+        var meters = meters(context);
+        Timer timer;
+        switch (operation) {
+            case OPERATION_QUERY:
+                timer = meters.query;
+                break;
+            case OPERATION_UPDATE:
+                timer = meters.update;
+                break;
+            default:
+                timer = meters.batch;
+        }
+        timer.record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRowsMapped(Map<String, String> context, int rows) {
+        if (rows > 0) {
+            meters(context).rowsMapped.increment(rows);
+        }
+    }
+
+    @Override
+    public void recordError(Map<String, String> context, SQLException error) {
+        String state = error.getSQLState();
+        // The class of the SQL state (e.g. 23 for integrity constraint violations) keeps the number of tag values bounded
+        String stateClass = state != null && state.length() >= 2 ? state.substring(0, 2) : "unknown";
+        var meters = meters(context);
+        meters.errors.computeIfAbsent(stateClass, k -> Counter.builder(PREFIX + "errors")
+                        .description("Number of failed SQL operations, by SQL state class")
+                        .tag("resource", meters.resource)
+                        .tag("sql_state_class", k)
+                        .register(registry))
+                .increment();
+    }
+
+    @Override
+    public void recordRetry(String outcome) {
+        retries.computeIfAbsent(outcome, k -> Counter.builder(PREFIX + "retries")
+                        .description("Number of retried storage operations, by outcome")
+                        .tag("outcome", k)
+                        .register(registry))
+                .increment();
+    }
+
+    private ResourceMeters meters(Map<String, String> context) {
+        String resource = context != null ? context.get(Sql.RESOURCE_CONTEXT_KEY) : null;
+        if (resource == null) {
+            resource = NO_RESOURCE;
+        }
+        var rval = resources.get(resource);
+        if (rval == null) {
+            if (resources.size() >= maxResources) {
+                resource = OTHER_RESOURCE;
+            }
+            rval = resources.computeIfAbsent(resource, ResourceMeters::new);
+        }
+        return rval;
+    }
+
+    private class ResourceMeters {
+
+        final String resource;
+        final Timer query;
+        final Timer update;
+        final Timer batch;
+        final Counter rowsMapped;
+        final Map<String, Counter> errors = new ConcurrentHashMap<>();
+
+        ResourceMeters(String resource) {
+            this.resource = resource;
+            this.query = executionTimer(resource, OPERATION_QUERY);
+            this.update = executionTimer(resource, OPERATION_UPDATE);
+            this.batch = executionTimer(resource, OPERATION_BATCH);
+            this.rowsMapped = Counter.builder(PREFIX + "rows.mapped")
+                    .description("Number of result rows mapped to objects")
+                    .tag("resource", resource)
+                    .register(registry);
+        }
+
+        private Timer executionTimer(String resource, String operation) {
+            return Timer.builder(PREFIX + "statement.execution")
+                    .description("Time spent executing SQL statements")
+                    .tag("resource", resource)
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+        }
+    }
+}
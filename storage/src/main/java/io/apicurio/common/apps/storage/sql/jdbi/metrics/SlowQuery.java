@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.metrics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A statement execution that took longer than the slow query threshold.
+ * Only the types of the bound parameters are kept, not their values.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class SlowQuery {
+
+    private final Instant timestamp;
+
+    private final String sql;
+
+    private final List<String> parameterTypes;
+
+    private final Map<String, String> context;
+
+    private final String operation;
+
+    private final long elapsedMillis;
+
+    private final long rows;
+
+    private final String plan;
+
+    public SlowQuery(Instant timestamp, String sql, List<String> parameterTypes, Map<String, String> context,
+                     String operation, long elapsedMillis, long rows, String plan) {
+        this.timestamp = timestamp;
+        this.sql = sql;
+        this.parameterTypes = parameterTypes;
+        this.context = context;
+        this.operation = operation;
+        this.elapsedMillis = elapsedMillis;
+        this.rows = rows;
+        this.plan = plan;
+    }
+
+    /**
+     * @return a copy of this finding with the given execution plan
+     */
+    public SlowQuery withPlan(String plan) {
+        return new SlowQuery(timestamp, sql, parameterTypes, context, operation, elapsedMillis, rows, plan);
+    }
+
+    /**
+     * @return when the execution finished
+     */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<String> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * @return the context of the statement, e.g. the {@link io.apicurio.common.apps.storage.sql.jdbi.query.Sql#RESOURCE_CONTEXT_KEY}
+     */
+    public Map<String, String> getContext() {
+        return context;
+    }
+
+    /**
+     * @return one of the {@code OPERATION_*} constants of {@link StorageMetrics}
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return time of the execution, including fetching and mapping of the result rows of a query
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return number of rows mapped by a query, or affected by an update
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the execution plan, or null if it was not captured
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery{" +
+                "timestamp=" + timestamp +
+                ", sql='" + sql + '\'' +
+                ", parameterTypes=" + parameterTypes +
+                ", context=" + context +
+                ", operation='" + operation + '\'' +
+                ", elapsedMillis=" + elapsedMillis +
+                ", rows=" + rows +
+                '}';
+    }
+}
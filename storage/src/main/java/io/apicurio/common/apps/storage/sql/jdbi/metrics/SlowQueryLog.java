@@ -0,0 +1,246 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.metrics;
+
+import io.agroal.api.AgroalDataSource;
+import io.apicurio.common.apps.config.Info;
+import io.apicurio.common.apps.storage.sql.BaseSqlStatements;
+import io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParams;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Logs statement executions that take longer than a configured threshold,
+ * and keeps the most recent ones in memory, see {@link #getSlowQueries()}.
+ * <p>
+ * The execution plan of a slow statement can be captured as well. The plan is explained
+ * on a separate connection by a single background thread, at most once per configured interval,
+ * so that capturing plans does not add load when the database is already slow.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+@ApplicationScoped
+public class SlowQueryLog {
+
+    private static final int EXPLAIN_TIMEOUT_SECONDS = 10;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    BaseSqlStatements sqlStatements;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.slow-query.threshold", defaultValue = "0")
+    @Info(category = "storage", description = "Time in milliseconds after which a statement execution is logged as slow. " +
+            "Set to 0 to disable the slow query log.", availableSince = "0.1.22.Final")
+    long threshold;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.slow-query.capacity", defaultValue = "100")
+    @Info(category = "storage", description = "Number of most recent slow statement executions kept in memory.", availableSince = "0.1.22.Final")
+    int capacity;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.slow-query.explain.enabled", defaultValue = "false")
+    @Info(category = "storage", description = "Capture the execution plan of slow statements, if supported by the database.", availableSince = "0.1.22.Final")
+    boolean explainEnabled;
+
+    @Inject
+    @ConfigProperty(name = "app.storage.sql.slow-query.explain.min-interval", defaultValue = "60000")
+    @Info(category = "storage", description = "Minimum time in milliseconds between two captures of an execution plan.", availableSince = "0.1.22.Final")
+    long explainMinInterval;
+
+    private long thresholdNanos;
+
+    // Guarded by itself
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    private final AtomicLong nextExplainAllowed = new AtomicLong();
+
+    private ThreadPoolExecutor explainExecutor;
+
+    // Checked on the first slow statement with parameters, only accessed by the explain thread
+    private Boolean explainWithParameters;
+
+    @PostConstruct
+    void init() {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+        if (isEnabled() && explainEnabled) {
+            explainExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), r -> {
+                var thread = new Thread(r, "sql-storage-explain");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (explainExecutor != null) {
+            explainExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return threshold > 0;
+    }
+
+    /**
+     * Records the execution if it took longer than the threshold.
+     *
+     * @param parameters parameters of the statement, only their types are recorded
+     * @param operation  one of the {@code OPERATION_*} constants of {@link StorageMetrics}
+     * @param startTime  value of {@link System#nanoTime()} when the execution started
+     * @param rows       number of rows mapped by a query, or affected by an update
+     */
+    public void record(String sql, SqlParams parameters, Map<String, String> context, String operation, long startTime, long rows) {
+        long elapsed = System.nanoTime() - startTime;
+        if (!isEnabled() || elapsed < thresholdNanos) {
+            return;
+        }
+        record(sql, parameters.getTypes(), context, operation, startTime, rows);
+    }
+
+    /**
+     * Records the execution if it took longer than the threshold.
+     *
+     * @param parameterTypes types of the parameters of the statement, see {@link SqlParams#getTypes()}
+     * @param operation      one of the {@code OPERATION_*} constants of {@link StorageMetrics}
+     * @param startTime      value of {@link System#nanoTime()} when the execution started
+     * @param rows           number of rows mapped by a query, or affected by an update
+     */
+    public void record(String sql, List<String> parameterTypes, Map<String, String> context, String operation, long startTime, long rows) {
+        long elapsed = System.nanoTime() - startTime;
+        if (!isEnabled() || elapsed < thresholdNanos) {
+            return;
+        }
+        var slowQuery = new SlowQuery(Instant.now(), sql, Collections.unmodifiableList(parameterTypes),
+                Collections.unmodifiableMap(new HashMap<>(context)), operation, TimeUnit.NANOSECONDS.toMillis(elapsed), rows, null);
+        if (explainExecutor != null && tryAcquireExplain()) {
+            try {
+                boolean parameterized = !parameterTypes.isEmpty();
+                explainExecutor.execute(() -> add(slowQuery.withPlan(explain(sql, parameterized))));
+                return;
+            } catch (RejectedExecutionException ex) {
+                // The previous plan is still being captured
+            }
+        }
+        add(slowQuery);
+    }
+
+    /**
+     * @return the most recent slow statement executions, oldest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    private void add(SlowQuery slowQuery) {
+        if (slowQuery.getPlan() != null) {
+            log.warn("Slow {} took {} ms ({} rows), context: {}, parameter types: {}, SQL: {}\n{}", slowQuery.getOperation(),
+                    slowQuery.getElapsedMillis(), slowQuery.getRows(), slowQuery.getContext(), slowQuery.getParameterTypes(),
+                    slowQuery.getSql(), slowQuery.getPlan());
+        } else {
+            log.warn("Slow {} took {} ms ({} rows), context: {}, parameter types: {}, SQL: {}", slowQuery.getOperation(),
+                    slowQuery.getElapsedMillis(), slowQuery.getRows(), slowQuery.getContext(), slowQuery.getParameterTypes(),
+                    slowQuery.getSql());
+        }
+        if (capacity < 1) {
+            return;
+        }
+        synchronized (slowQueries) {
+            if (slowQueries.size() >= capacity) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(slowQuery);
+        }
+    }
+
+    private boolean tryAcquireExplain() {
+        long now = System.currentTimeMillis();
+        long allowed = nextExplainAllowed.get();
+        return now >= allowed && nextExplainAllowed.compareAndSet(allowed, now + explainMinInterval);
+    }
+
+    /**
+     * @param parameterized true if the statement has parameters, which are not bound when it is explained
+     * @return the execution plan of the statement, or null if it could not be captured
+     */
+    private String explain(String sql, boolean parameterized) {
+        if (parameterized && Boolean.FALSE.equals(explainWithParameters)) {
+            return null;
+        }
+        String explainSql = sqlStatements.explainStatement(sql);
+        if (explainSql == null) {
+            return null;
+        }
+        // Not the connection of the slow statement, which may be in a transaction or already closed
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            if (parameterized) {
+                if (explainWithParameters == null) {
+                    explainWithParameters = sqlStatements.supportsExplainWithParameters(connection);
+                }
+                if (!explainWithParameters) {
+                    log.debug("Execution plans of slow statements with parameters are not supported by the database.");
+                    return null;
+                }
+            }
+            statement.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery(explainSql)) {
+                var plan = new StringBuilder();
+                while (resultSet.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(resultSet.getString(1));
+                }
+                return plan.toString();
+            }
+        } catch (SQLException ex) {
+            log.debug("Could not capture the execution plan of a slow statement: {}", sql, ex);
+            return null;
+        }
+    }
+}
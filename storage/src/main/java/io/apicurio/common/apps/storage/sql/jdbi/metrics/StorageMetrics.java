@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.metrics;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Records metrics of the SQL storage layer.
+ * <p>
+ * Metrics are tagged by the {@link io.apicurio.common.apps.storage.sql.jdbi.query.Sql#RESOURCE_CONTEXT_KEY}
+ * value of the statement context, if any.
+ * When metrics are disabled, {@link #NOOP} is used, and {@link #startTimer()} does not even read the clock.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public interface StorageMetrics {
+
+    String OPERATION_QUERY = "query";
+    String OPERATION_UPDATE = "update";
+    String OPERATION_BATCH = "batch";
+
+    /**
+     * An attempt failed with a transient failure, and the operation will be attempted again.
+     */
+    String RETRY_OUTCOME_RETRIED = "retried";
+    /**
+     * An operation succeeded after it had been retried.
+     */
+    String RETRY_OUTCOME_RECOVERED = "recovered";
+    /**
+     * An attempt failed with a transient failure, and the retry policy gave up.
+     */
+    String RETRY_OUTCOME_EXHAUSTED = "exhausted";
+
+    StorageMetrics NOOP = new StorageMetrics() {
+    };
+
+    /**
+     * @return the start time to be passed to one of the {@code record*} methods
+     */
+    default long startTimer() {
+        return 0;
+    }
+
+    default void recordConnectionAcquired(long startTime) {
+    }
+
+    default void recordExecution(Map<String, String> context, String operation, long startTime) {
+    }
+
+    default void recordRowsMapped(Map<String, String> context, int rows) {
+    }
+
+    default void recordError(Map<String, String> context, SQLException error) {
+    }
+
+    /**
+     * @param outcome one of the {@code RETRY_OUTCOME_*} constants
+     */
+    default void recordRetry(String outcome) {
+    }
+}
@@ -22,16 +22,32 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Can parse a DDL into a list of individual statements.
+ * Can parse a DDL into individual statements.
+ * <p>
+ * A statement ends at the end of a line, unless it continues on the following lines.
+ * This is the case when a line ends with {@code (} or {@code '}, until a line starts with {@code )} or {@code '},
+ * for a {@code CREATE FUNCTION} statement, until an empty line, and inside a dollar-quoted string (e.g. a function body),
+ * until the closing tag. Lines starting with {@code --} outside of a dollar-quoted string are skipped.
+ *
  * @author eric.wittmann@gmail.com
  */
 public class DdlParser {
 
+    private static final Pattern DOLLAR_QUOTE_TAG = Pattern.compile("\\$(?:[A-Za-z_][A-Za-z_0-9]*)?\\$");
+
+    private static final String[] QUERY_PREFIXES = {"SELECT", "WITH", "VALUES", "CALL", "SHOW", "EXPLAIN"};
+
     /**
      * Constructor.
      */
@@ -56,43 +72,154 @@ public class DdlParser {
      * @throws IOException on an IO error
      */
     public List<String> parse(InputStream ddlStream) throws IOException {
-        List<String> rval = new LinkedList<>();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(ddlStream, StandardCharsets.UTF_8));
-        String line;
-        StringBuilder builder = new StringBuilder();
-        boolean isInMultiLineStatement = false;
-        while ( (line = reader.readLine()) != null) {
-            if (line.startsWith("--")) {
-                continue;
-            }
-            if (line.trim().isEmpty() && !isInMultiLineStatement) {
-                continue;
+        List<String> rval = new ArrayList<>();
+        try {
+            statements(ddlStream).forEachRemaining(rval::add);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return rval;
+    }
+
+    /**
+     * Parses the statements lazily, the stream is read as the statements are consumed.
+     * The caller is responsible for closing the stream.
+     *
+     * @param ddlStream a DDL input stream
+     * @return an iterator of SQL statements, which throws {@link UncheckedIOException} on an IO error
+     */
+    public Iterator<String> statements(InputStream ddlStream) {
+        return new StatementIterator(new BufferedReader(new InputStreamReader(ddlStream, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return true if the statement may return a result set, so it can not be executed in a batch
+     */
+    public static boolean isQuery(String statement) {
+        String start = statement.stripLeading();
+        for (String prefix : QUERY_PREFIXES) {
+            if (start.regionMatches(true, 0, prefix, 0, prefix.length())
+                    && (start.length() == prefix.length() || !Character.isLetterOrDigit(start.charAt(prefix.length())))) {
+                return true;
             }
-            if (line.trim().isEmpty() && isInMultiLineStatement) {
-                isInMultiLineStatement = false;
+        }
+        return false;
+    }
+
+    private static class StatementIterator implements Iterator<String> {
+
+        private final BufferedReader reader;
+
+        private String next;
+
+        private boolean finished;
+
+        StatementIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                try {
+                    next = readStatement();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                finished = next == null;
             }
-            if (line.endsWith("'") || line.endsWith("(")) {
-                isInMultiLineStatement = true;
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
-            if (line.startsWith("'") || line.startsWith(")")) {
-                isInMultiLineStatement = false;
+            String rval = next;
+            next = null;
+            return rval;
+        }
+
+        /**
+         * @return the next statement, or null at the end of the stream
+         */
+        private String readStatement() throws IOException {
+            StringBuilder builder = new StringBuilder();
+            boolean isInMultiLineStatement = false;
+            // Tag of the dollar-quoted string the parser is in, e.g. "$$" or "$body$"
+            String dollarQuoteTag = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (dollarQuoteTag == null) {
+                    if (line.startsWith("--")) {
+                        continue;
+                    }
+                    if (line.trim().isEmpty() && !isInMultiLineStatement) {
+                        continue;
+                    }
+                    if (line.trim().isEmpty() && isInMultiLineStatement) {
+                        isInMultiLineStatement = false;
+                    }
+                    if (line.endsWith("'") || line.endsWith("(")) {
+                        isInMultiLineStatement = true;
+                    }
+                    if (line.startsWith("'") || line.startsWith(")")) {
+                        isInMultiLineStatement = false;
+                    }
+                    if (line.toUpperCase(Locale.ROOT).startsWith("CREATE FUNCTION")) {
+                        isInMultiLineStatement = true;
+                    }
+                    dollarQuoteTag = scanDollarQuotes(line, null);
+                } else {
+                    dollarQuoteTag = scanDollarQuotes(line, dollarQuoteTag);
+                    if (dollarQuoteTag == null && line.trim().endsWith(";")) {
+                        // e.g. "$$ LANGUAGE plpgsql;"
+                        isInMultiLineStatement = false;
+                    }
+                }
+                builder.append(line);
+                builder.append("\n");
+
+                if (!isInMultiLineStatement && dollarQuoteTag == null) {
+                    return toStatement(builder);
+                }
             }
-            if (line.startsWith("CREATE FUNCTION")) {
-                isInMultiLineStatement = true;
+            // The last statement may not be followed by an empty line
+            return builder.length() > 0 ? toStatement(builder) : null;
+        }
+
+        private static String toStatement(StringBuilder builder) {
+            String sqlStatement = builder.toString().trim();
+            if (sqlStatement.endsWith(";")) {
+                sqlStatement = sqlStatement.substring(0, sqlStatement.length() - 1);
             }
-            builder.append(line);
-            builder.append("\n");
+            return sqlStatement;
+        }
 
-            if (!isInMultiLineStatement) {
-                String sqlStatement = builder.toString().trim();
-                if (sqlStatement.endsWith(";")) {
-                    sqlStatement = sqlStatement.substring(0, sqlStatement.length() - 1);
+        /**
+         * @param openTag tag of the dollar-quoted string at the start of the line, or null
+         * @return tag of the dollar-quoted string at the end of the line, or null
+         */
+        private static String scanDollarQuotes(String line, String openTag) {
+            int index = 0;
+            while (true) {
+                if (openTag == null) {
+                    Matcher matcher = DOLLAR_QUOTE_TAG.matcher(line);
+                    if (!matcher.find(index)) {
+                        return null;
+                    }
+                    openTag = matcher.group();
+                    index = matcher.end();
+                } else {
+                    int end = line.indexOf(openTag, index);
+                    if (end < 0) {
+                        return openTag;
+                    }
+                    index = end + openTag.length();
+                    openTag = null;
                 }
-                rval.add(sqlStatement);
-                builder = new StringBuilder();
             }
         }
-        return rval;
     }
-
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class BatchImpl implements Batch {
+
+    private final HandleImpl handle;
+
+    private final List<String> statements = new ArrayList<>();
+
+    public BatchImpl(HandleImpl handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * @see Batch#add(String)
+     */
+    @Override
+    public Batch add(String sql) throws StorageException {
+        statements.add(sql);
+        if (statements.size() >= DEFAULT_BATCH_SIZE) {
+            execute();
+        }
+        return this;
+    }
+
+    /**
+     * @see Batch#execute()
+     */
+    @Override
+    public void execute() throws StorageException {
+        if (statements.isEmpty()) {
+            return;
+        }
+        try (Statement statement = handle.getConnection().createStatement()) {
+            for (String sql : statements) {
+                statement.addBatch(sql);
+            }
+            long start = handle.startTimer();
+            statement.executeBatch();
+            handle.getMetrics().recordExecution(Map.of(), StorageMetrics.OPERATION_BATCH, start);
+        } catch (BatchUpdateException e) {
+            String failed = statements.get(failedIndex(e));
+            handle.getMetrics().recordError(Map.of(), e);
+            throw new StorageException("Failed to execute statement: " + failed, Map.of(), e);
+        } catch (SQLException e) {
+            handle.getMetrics().recordError(Map.of(), e);
+            throw new StorageException(Map.of(), e);
+        } finally {
+            statements.clear();
+        }
+    }
+
+    /**
+     * Drivers either stop at the failed statement, or report it as {@link Statement#EXECUTE_FAILED}.
+     */
+    private int failedIndex(BatchUpdateException e) {
+        int[] counts = e.getUpdateCounts();
+        if (counts != null) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    return i;
+                }
+            }
+            if (counts.length < statements.size()) {
+                return counts.length;
+            }
+        }
+        return statements.size() - 1;
+    }
+}
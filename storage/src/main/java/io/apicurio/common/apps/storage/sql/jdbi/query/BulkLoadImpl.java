@@ -0,0 +1,386 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.content.handle.ContentHandle;
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.StatementTimeouts;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
+import io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParams;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The PostgreSQL driver is used through reflection, so that it is not required on the classpath.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class BulkLoadImpl implements BulkLoad {
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Null if the PostgreSQL driver is not available
+    private static final Class<?> PG_CONNECTION;
+    private static final Method GET_COPY_API;
+    private static final Method COPY_IN;
+
+    static {
+        Class<?> pgConnection = null;
+        Method getCopyApi = null;
+        Method copyIn = null;
+        try {
+            ClassLoader classLoader = BulkLoadImpl.class.getClassLoader();
+            pgConnection = Class.forName("org.postgresql.PGConnection", false, classLoader);
+            getCopyApi = pgConnection.getMethod("getCopyAPI");
+            copyIn = Class.forName("org.postgresql.copy.CopyManager", false, classLoader)
+                    .getMethod("copyIn", String.class, Reader.class, int.class);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            pgConnection = null;
+        }
+        PG_CONNECTION = pgConnection;
+        GET_COPY_API = getCopyApi;
+        COPY_IN = copyIn;
+    }
+
+    private final HandleImpl handle;
+
+    private final String table;
+
+    private final String[] columns;
+
+    private final Map<String, String> context = new HashMap<>();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public BulkLoadImpl(HandleImpl handle, String table, String... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Bulk load into " + table + " requires at least one column");
+        }
+        this.handle = handle;
+        this.table = table;
+        this.columns = columns;
+    }
+
+    /**
+     * @see BulkLoad#setContext(String, String)
+     */
+    @Override
+    public BulkLoad setContext(String key, String value) {
+        context.put(key, value);
+        return this;
+    }
+
+    /**
+     * @see BulkLoad#setBatchSize(int)
+     */
+    @Override
+    public BulkLoad setBatchSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + size);
+        }
+        batchSize = size;
+        return this;
+    }
+
+    /**
+     * @see BulkLoad#execute(Iterator, RowWriter)
+     */
+    @Override
+    public <T> long execute(Iterator<T> rows, RowWriter<T> writer) throws StorageException {
+        Object copyApi = getCopyApi();
+        if (copyApi != null) {
+            return copy(copyApi, rows, writer);
+        }
+        return insert(rows, writer);
+    }
+
+    /**
+     * @return the CopyManager of the connection, or null if the connection is not a PostgreSQL connection
+     */
+    private Object getCopyApi() throws StorageException {
+        if (PG_CONNECTION == null) {
+            return null;
+        }
+        Connection connection = handle.getConnection();
+        try {
+            if (!connection.isWrapperFor(PG_CONNECTION)) {
+                return null;
+            }
+            return GET_COPY_API.invoke(connection.unwrap(PG_CONNECTION));
+        } catch (SQLException e) {
+            throw storageException(e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new StorageException("Could not use the COPY API of the PostgreSQL driver", context, e);
+        }
+    }
+
+    private <T> long copy(Object copyApi, Iterator<T> rows, RowWriter<T> writer) throws StorageException {
+        String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN";
+        long timeoutMillis = handle.getStatementTimeouts().timeoutMillis(null, context);
+        long start = handle.startTimer();
+        long count;
+        try {
+            if (timeoutMillis > 0) {
+                count = copyWithTimeout(copyApi, sql, rows, writer, timeoutMillis);
+            } else {
+                count = copy(copyApi, sql, rows, writer);
+            }
+        } catch (SQLException e) {
+            throw storageException(e);
+        }
+        handle.getMetrics().recordExecution(context, StorageMetrics.OPERATION_BATCH, start);
+        handle.recordSlowQuery(sql, new SqlParams(), context, StorageMetrics.OPERATION_BATCH, start, count);
+        handle.recordWrite(context);
+        return count;
+    }
+
+    /**
+     * The COPY API does not use a {@link Statement}, so the timeout is set on the session with {@code statement_timeout}.
+     * In a transaction, it is only set until the transaction ends, because a failed COPY aborts the transaction
+     * and the timeout could not be reset afterwards.
+     */
+    private <T> long copyWithTimeout(Object copyApi, String sql, Iterator<T> rows, RowWriter<T> writer, long timeoutMillis)
+            throws StorageException, SQLException {
+        Connection connection = handle.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (!connection.getAutoCommit()) {
+                statement.execute("SET LOCAL statement_timeout = " + timeoutMillis);
+                return copy(copyApi, sql, rows, writer);
+            }
+            statement.execute("SET statement_timeout = " + timeoutMillis);
+            try {
+                return copy(copyApi, sql, rows, writer);
+            } finally {
+                statement.execute("RESET statement_timeout");
+            }
+        }
+    }
+
+    private <T> long copy(Object copyApi, String sql, Iterator<T> rows, RowWriter<T> writer) throws StorageException, SQLException {
+        try {
+            return (Long) COPY_IN.invoke(copyApi, sql, new CopyTextReader<>(rows, writer, columns.length), COPY_BUFFER_SIZE);
+        } catch (IllegalAccessException e) {
+            throw new StorageException("Could not use the COPY API of the PostgreSQL driver", context, e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new StorageException(context, cause);
+        }
+    }
+
+    private <T> long insert(Iterator<T> rows, RowWriter<T> writer) throws StorageException {
+        var placeholders = new String[columns.length];
+        Arrays.fill(placeholders, "?");
+        Update update = handle.createUpdate("INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                String.join(", ", placeholders) + ")");
+        context.forEach(update::setContext);
+        update.setBatchSize(batchSize);
+        var values = new Object[columns.length];
+        long count = 0;
+        while (rows.hasNext()) {
+            Arrays.fill(values, null);
+            writer.write(rows.next(), values);
+            for (int i = 0; i < values.length; i++) {
+                bind(update, i, values[i]);
+            }
+            update.add();
+            count++;
+            if (count % batchSize == 0) {
+                // Do not keep the update counts of all rows
+                update.executeBatch();
+            }
+        }
+        update.executeBatch();
+        return count;
+    }
+
+    private static void bind(Update update, int position, Object value) {
+        if (value == null || value instanceof String) {
+            update.bind(position, (String) value);
+        } else if (value instanceof Long) {
+            update.bind(position, (long) (Long) value);
+        } else if (value instanceof Integer) {
+            update.bind(position, (int) (Integer) value);
+        } else if (value instanceof Boolean) {
+            update.bind(position, (boolean) (Boolean) value);
+        } else if (value instanceof Enum) {
+            update.bind(position, (Enum<?>) value);
+        } else if (value instanceof Instant) {
+            update.bind(position, (Instant) value);
+        } else if (value instanceof Date) {
+            update.bind(position, (Date) value);
+        } else if (value instanceof byte[]) {
+            update.bind(position, (byte[]) value);
+        } else if (value instanceof ContentHandle) {
+            update.bind(position, (ContentHandle) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported value of type " + value.getClass().getName() + " at position " + position);
+        }
+    }
+
+    private StorageException storageException(SQLException e) {
+        handle.getMetrics().recordError(context, e);
+        var timeoutException = StatementTimeouts.timeoutException(e, StatementTimeouts.Watch.NONE, context);
+        return timeoutException != null ? timeoutException : new StorageException(context, e);
+    }
+
+    /**
+     * Encodes the rows in the text format of {@code COPY}, one row at a time, as the driver reads them.
+     */
+    static class CopyTextReader<T> extends Reader {
+
+        private final Iterator<T> rows;
+
+        private final RowWriter<T> writer;
+
+        private final Object[] values;
+
+        private final StringBuilder line = new StringBuilder();
+
+        private int position;
+
+        CopyTextReader(Iterator<T> rows, RowWriter<T> writer, int columns) {
+            this.rows = rows;
+            this.writer = writer;
+            this.values = new Object[columns];
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == line.length()) {
+                if (!rows.hasNext()) {
+                    return -1;
+                }
+                encode(rows.next());
+            }
+            int count = Math.min(length, line.length() - position);
+            line.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        private void encode(T row) {
+            line.setLength(0);
+            position = 0;
+            Arrays.fill(values, null);
+            writer.write(row, values);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append('\t');
+                }
+                append(i, values[i]);
+            }
+            line.append('\n');
+        }
+
+        private void append(int position, Object value) {
+            if (value == null) {
+                line.append("\\N");
+            } else if (value instanceof String) {
+                appendEscaped((String) value);
+            } else if (value instanceof Long || value instanceof Integer) {
+                line.append(value);
+            } else if (value instanceof Boolean) {
+                line.append((Boolean) value ? 't' : 'f');
+            } else if (value instanceof Enum) {
+                appendEscaped(((Enum<?>) value).name());
+            } else if (value instanceof Instant) {
+                appendTimestamp((Instant) value);
+            } else if (value instanceof Date) {
+                appendTimestamp(((Date) value).toInstant());
+            } else if (value instanceof byte[]) {
+                appendBytes((byte[]) value);
+            } else if (value instanceof ContentHandle) {
+                appendBytes(((ContentHandle) value).bytes());
+            } else {
+                throw new IllegalArgumentException("Unsupported value of type " + value.getClass().getName() + " at position " + position);
+            }
+        }
+
+        private void appendEscaped(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    default:
+                        line.append(c);
+                }
+            }
+        }
+
+        /**
+         * Same as the driver sends a bound timestamp: the local time of the JVM with its offset,
+         * which is ignored by a {@code timestamp} column.
+         */
+        private void appendTimestamp(Instant value) {
+            line.append(OffsetDateTime.ofInstant(value, ZoneId.systemDefault()));
+        }
+
+        /**
+         * The hex format of {@code bytea}, with the backslash escaped for the text format.
+         */
+        private void appendBytes(byte[] value) {
+            line.append("\\\\x");
+            for (byte b : value) {
+                line.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.exceptions.WrappedStorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.QueryResultCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Mapped query answered from the {@link QueryResultCache} if possible.
+ * The query is only executed when the result of the called method is not cached.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+class CachedMappedQueryImpl<T> implements MappedQuery<T> {
+
+    private final QueryResultCache cache;
+    private final String sql;
+    private final Object parametersKey;
+    private final Class<?> mapperClass;
+    private final String cacheKey;
+    private final long ttlNanos;
+    private final String[] tags;
+    private final QueryResultCache.Loader<MappedQuery<T>> executor;
+
+    /**
+     * @param executor executes the query, when the result is not cached
+     */
+    CachedMappedQueryImpl(QueryResultCache cache, String sql, Object parametersKey, Class<?> mapperClass, String cacheKey, long ttlNanos,
+                          String[] tags, QueryResultCache.Loader<MappedQuery<T>> executor) {
+        this.cache = cache;
+        this.sql = sql;
+        this.parametersKey = parametersKey;
+        this.mapperClass = mapperClass;
+        this.cacheKey = cacheKey;
+        this.ttlNanos = ttlNanos;
+        this.tags = tags;
+        this.executor = executor;
+    }
+
+    @Override
+    public T one() throws StorageException {
+        return cached("one", () -> executor.load().one());
+    }
+
+    @Override
+    public T first() throws StorageException {
+        return cached("first", () -> executor.load().first());
+    }
+
+    @Override
+    public Optional<T> findOne() throws StorageException {
+        return cached("findOne", () -> executor.load().findOne());
+    }
+
+    @Override
+    public Optional<T> findFirst() throws StorageException {
+        return cached("findFirst", () -> executor.load().findFirst());
+    }
+
+    @Override
+    public List<T> list() throws StorageException {
+        return cached("list", () -> Collections.unmodifiableList(executor.load().list()));
+    }
+
+    @Override
+    public Stream<T> stream() {
+        try {
+            return list().stream();
+        } catch (StorageException e) {
+            throw new WrappedStorageException(e);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) throws StorageException {
+        list().forEach(action);
+    }
+
+    @Override
+    public long[] longArray() throws StorageException {
+        // Arrays can not be shared
+        return cached("longArray", () -> executor.load().longArray()).clone();
+    }
+
+    @Override
+    public int[] intArray() throws StorageException {
+        return cached("intArray", () -> executor.load().intArray()).clone();
+    }
+
+    private <R> R cached(String operation, QueryResultCache.Loader<R> loader) throws StorageException {
+        return cache.get(new QueryResultCache.Key(sql, parametersKey, mapperClass, cacheKey, operation), ttlNanos, tags, loader);
+    }
+}
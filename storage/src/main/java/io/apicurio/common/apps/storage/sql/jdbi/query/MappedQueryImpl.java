@@ -19,13 +19,18 @@ package io.apicurio.common.apps.storage.sql.jdbi.query;
 import io.apicurio.common.apps.storage.exceptions.NotFoundException;
 import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.exceptions.WrappedStorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.StatementTimeouts;
 import io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
+import io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParams;
 
 import java.io.Closeable;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -41,24 +46,58 @@ import java.util.stream.StreamSupport;
  */
 public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
 
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+
+    final HandleImpl handle;
+    final String sql;
+    final SqlParams parameters;
     final PreparedStatement statement;
     final RowMapper<T> mapper;
     final ResultSet resultSet;
     private final Map<String, String> context;
+    private final StorageMetrics metrics;
+    private final long startTime;
+    private final StatementTimeouts.Watch watch;
+    private int rowsMapped;
 
     /**
-     * Constructor.
+     * Constructor. The statement is closed when this query is closed.
      *
      * @param statement a SQL prepared statement
      * @param mapper    a row mapper
      * @throws SQLException if a SQL error is detected
      */
     public MappedQueryImpl(PreparedStatement statement, RowMapper<T> mapper, Map<String, String> context) throws SQLException {
+        this(null, null, null, statement, mapper, context, StatementTimeouts.Watch.NONE);
+    }
+
+    /**
+     * Constructor. The statement is released back to the handle when this query is closed.
+     *
+     * @param handle    the handle that prepared the statement
+     * @param sql        the SQL of the statement
+     * @param parameters the parameters bound to the statement
+     * @param statement  a SQL prepared statement
+     * @param mapper     a row mapper
+     * @param watch      the timeout watch of the statement, stopped when this query is closed or all rows have been read,
+     *                   because the rows are fetched while they are mapped
+     * @throws SQLException if a SQL error is detected
+     */
+    public MappedQueryImpl(HandleImpl handle, String sql, SqlParams parameters, PreparedStatement statement, RowMapper<T> mapper,
+                           Map<String, String> context, StatementTimeouts.Watch watch) throws SQLException {
+        this.handle = handle;
+        this.sql = sql;
+        this.parameters = parameters;
         this.statement = statement;
         this.mapper = mapper;
-        this.resultSet = statement.executeQuery();
         Objects.requireNonNull(context);
         this.context = context;
+        this.watch = watch;
+        this.metrics = handle != null ? handle.getMetrics() : StorageMetrics.NOOP;
+        this.startTime = handle != null ? handle.startTimer() : 0;
+        this.resultSet = statement.executeQuery();
+        metrics.recordExecution(context, StorageMetrics.OPERATION_QUERY, startTime);
     }
 
     /**
@@ -69,7 +108,7 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
         T rval = null;
         try {
             if (this.resultSet.next()) {
-                rval = this.mapper.map(resultSet);
+                rval = map();
                 if (this.resultSet.next()) {
                     throw new StorageException("SQL error: Expected only one result but got multiple.", context);
                 }
@@ -77,7 +116,7 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
                 throw new NotFoundException("SQL error: Expected only one result row but got none.", context);
             }
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            throw storageException(e);
         } finally {
             close();
         }
@@ -92,12 +131,12 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
         T rval = null;
         try {
             if (this.resultSet.next()) {
-                rval = this.mapper.map(resultSet);
+                rval = map();
             } else {
                 throw new NotFoundException("SQL error: Expected AT LEAST one result row but got none.", context);
             }
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            throw storageException(e);
         } finally {
             close();
         }
@@ -112,7 +151,7 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
         Optional<T> rval;
         try {
             if (this.resultSet.next()) {
-                rval = Optional.of(this.mapper.map(resultSet));
+                rval = Optional.of(map());
                 if (this.resultSet.next()) {
                     throw new StorageException("SQL error: Expected only one result but got multiple.", context);
                 }
@@ -120,7 +159,7 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
                 rval = Optional.empty();
             }
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            throw storageException(e);
         } finally {
             close();
         }
@@ -135,12 +174,12 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
         Optional<T> rval = null;
         try {
             if (this.resultSet.next()) {
-                rval = Optional.of(this.mapper.map(resultSet));
+                rval = Optional.of(map());
             } else {
                 rval = Optional.empty();
             }
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            throw storageException(e);
         } finally {
             close();
         }
@@ -152,20 +191,102 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
      */
     @Override
     public List<T> list() throws StorageException {
-        List<T> rval = new LinkedList<>();
+        List<T> rval;
         try {
+            rval = new ArrayList<>(initialCapacity());
             while (this.resultSet.next()) {
-                T t = this.mapper.map(resultSet);
+                T t = map();
                 rval.add(t);
             }
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            throw storageException(e);
         } finally {
             close();
         }
         return rval;
     }
 
+    /**
+     * @see MappedQuery#forEach(Consumer)
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) throws StorageException {
+        try {
+            while (this.resultSet.next()) {
+                action.accept(map());
+            }
+        } catch (SQLException e) {
+            throw storageException(e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @see MappedQuery#longArray()
+     */
+    @Override
+    public long[] longArray() throws StorageException {
+        try {
+            long[] rval = new long[initialCapacity()];
+            int size = 0;
+            while (this.resultSet.next()) {
+                if (size == rval.length) {
+                    rval = Arrays.copyOf(rval, rval.length * 2);
+                }
+                rval[size++] = this.resultSet.getLong(1);
+                rowsMapped++;
+            }
+            return size == rval.length ? rval : Arrays.copyOf(rval, size);
+        } catch (SQLException e) {
+            throw storageException(e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @see MappedQuery#intArray()
+     */
+    @Override
+    public int[] intArray() throws StorageException {
+        try {
+            int[] rval = new int[initialCapacity()];
+            int size = 0;
+            while (this.resultSet.next()) {
+                if (size == rval.length) {
+                    rval = Arrays.copyOf(rval, rval.length * 2);
+                }
+                rval[size++] = this.resultSet.getInt(1);
+                rowsMapped++;
+            }
+            return size == rval.length ? rval : Arrays.copyOf(rval, size);
+        } catch (SQLException e) {
+            throw storageException(e);
+        } finally {
+            close();
+        }
+    }
+
+    private T map() throws SQLException {
+        rowsMapped++;
+        return this.mapper.map(resultSet);
+    }
+
+    private StorageException storageException(SQLException e) {
+        metrics.recordError(context, e);
+        var timeoutException = StatementTimeouts.timeoutException(e, watch, context);
+        return timeoutException != null ? timeoutException : new StorageException(context, e);
+    }
+
+    /**
+     * The fetch size is the best available hint of how many rows are expected.
+     */
+    private int initialCapacity() throws SQLException {
+        int fetchSize = this.statement.getFetchSize();
+        return fetchSize > 0 ? Math.min(fetchSize, MAX_INITIAL_CAPACITY) : DEFAULT_INITIAL_CAPACITY;
+    }
+
     /**
      * @see MappedQuery#stream()
      */
@@ -176,13 +297,15 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
             public boolean tryAdvance(Consumer<? super T> action) {
                 try {
                     if (!resultSet.next()) {
+                        // The stream may be closed much later
+                        watch.stop();
                         return false;
                     }
-                    T t = mapper.map(resultSet);
+                    T t = map();
                     action.accept(t);
                     return true;
                 } catch (SQLException e) {
-                    throw new WrappedStorageException(new StorageException(context, e));
+                    throw new WrappedStorageException(storageException(e));
                 }
             }
 
@@ -194,10 +317,22 @@ public class MappedQueryImpl<T> implements MappedQuery<T>, Closeable {
      */
     @Override
     public void close() {
+        // Before the statement is released, the watch must not cancel the next query using it
+        watch.stop();
+        metrics.recordRowsMapped(context, rowsMapped);
         try {
-            this.statement.close();
+            if (handle != null) {
+                // Fetching and mapping the rows is part of the cost of a query
+                handle.recordSlowQuery(sql, parameters, context, StorageMetrics.OPERATION_QUERY, startTime, rowsMapped);
+                this.resultSet.close();
+                handle.releaseStatement(sql, statement);
+            } else {
+                this.statement.close();
+            }
         } catch (SQLException e) {
-            throw new WrappedStorageException(new StorageException(context, e));
+            throw new WrappedStorageException(storageException(e));
+        } finally {
+            rowsMapped = 0;
         }
     }
 }
@@ -17,14 +17,20 @@
 package io.apicurio.common.apps.storage.sql.jdbi.query;
 
 import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.exceptions.StorageTimeoutException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.StatementTimeouts;
 import io.apicurio.common.apps.storage.sql.jdbi.mappers.MapperLoaderHolder;
 import io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Map;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * @author eric.wittmann@gmail.com
  */
@@ -32,6 +38,21 @@ public class QueryImpl extends SqlImpl<Query> implements Query {
 
     private int fetchSize = -1;
 
+    // Null if the result is not cached
+    private String cacheKey;
+    private Duration cacheTtl;
+    private String[] cacheTags;
+
+    /**
+     * Constructor.
+     *
+     * @param handle a DB handle
+     * @param sql    some SQL statement(s)
+     */
+    public QueryImpl(HandleImpl handle, String sql) {
+        super(handle, sql);
+    }
+
     /**
      * Constructor.
      *
@@ -55,22 +76,62 @@ public class QueryImpl extends SqlImpl<Query> implements Query {
         return this;
     }
 
+    /**
+     * @see Query#cached(String, Duration, String...)
+     */
+    @Override
+    public Query cached(String key, Duration ttl, String... tags) {
+        requireNonNull(key);
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Time-to-live of a cached query result must be positive, got " + ttl);
+        }
+        if (!parameters.isEmpty()) {
+            throw new IllegalStateException("Query must be marked as cached before any parameter is bound");
+        }
+        this.cacheKey = key;
+        this.cacheTtl = ttl;
+        this.cacheTags = tags.clone();
+        return this;
+    }
+
     /**
      * @see Query#map(io.apicurio.common.apps.storage.sql.jdbi.mappers.RowMapper)
      */
     @Override
     public <T> MappedQuery<T> map(RowMapper<T> mapper) throws StorageException {
-        try {
-            PreparedStatement statement = this.connection
-                    .orElseThrow(() -> new StorageException("Handle not set. Use setHandleOnce(...) to set the Handle before executing the query.", null))
-                    .prepareStatement(sql);
-            this.bindParametersTo(statement);
-            if (this.fetchSize != -1) {
-                statement.setFetchSize(fetchSize);
+        if (cacheTtl != null) {
+            var cache = getHandle().getQueryResultCache();
+            var parametersKey = parameters.cacheKey();
+            if (cache != null && parametersKey != null) {
+                return new CachedMappedQueryImpl<>(cache, sql, parametersKey, mapper.getClass(), cacheKey, cacheTtl.toNanos(), cacheTags,
+                        () -> execute(mapper));
             }
-            return new MappedQueryImpl<>(statement, mapper, context);
+        }
+        return execute(mapper);
+    }
+
+    private <T> MappedQuery<T> execute(RowMapper<T> mapper) throws StorageException {
+        HandleImpl handle = getHandle();
+        PreparedStatement statement = null;
+        StatementTimeouts.Watch watch = null;
+        try {
+            statement = prepareStatement();
+            // Always set, because a cached statement may still have the fetch size of a previous query
+            statement.setFetchSize(this.fetchSize != -1 ? fetchSize : 0);
+            watch = handle.getStatementTimeouts().start(statement, timeout, context);
+            // The rows are fetched while they are mapped, so the watch is stopped when the mapped query is closed
+            return new MappedQueryImpl<>(handle, sql, parameters, statement, mapper, context, watch);
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            if (watch != null) {
+                watch.stop();
+            }
+            if (statement != null) {
+                handle.discardStatement(statement);
+            }
+            throw watch != null ? storageException(e, watch) : storageException(e);
+        } catch (StorageTimeoutException e) {
+            handle.discardStatement(statement);
+            throw e;
         }
     }
 
@@ -83,14 +144,13 @@ public class QueryImpl extends SqlImpl<Query> implements Query {
         return this.map(mapper);
     }
 
-    @SuppressWarnings("unchecked")
     private <T> RowMapper<T> loadMapper(Class<T> klass) throws StorageException {
-        return (RowMapper<T>) MapperLoaderHolder.getInstance().getMapperLoader()
-                .flatMap(loader ->
-                        loader.getMappers().stream()
-                                .filter(mapper -> mapper.supports(klass))
-                                .findFirst()
-                )
-                .orElseThrow(() -> new StorageException("Row mapper not implemented for class: " + klass, context));
+        try {
+            return MapperLoaderHolder.getInstance().getMapperLoader()
+                    .flatMap(loader -> loader.getMapper(klass))
+                    .orElseThrow(() -> new StorageException("Row mapper not implemented for class: " + klass, context));
+        } catch (IllegalStateException ex) {
+            throw new StorageException(ex.getMessage(), context, ex);
+        }
     }
 }
@@ -20,23 +20,18 @@ import io.apicurio.common.apps.content.handle.ContentHandle;
 import io.apicurio.common.apps.storage.exceptions.StorageException;
 import io.apicurio.common.apps.storage.sql.jdbi.Handle;
 import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.BytesSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.ContentHandleSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.DateSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.EnumSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.InstantSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.IntegerSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.LongSqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParam;
-import io.apicurio.common.apps.storage.sql.jdbi.query.param.StringSqlParam;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleSettings;
+import io.apicurio.common.apps.storage.sql.jdbi.StatementTimeouts;
+import io.apicurio.common.apps.storage.sql.jdbi.query.param.SqlParams;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -46,48 +41,77 @@ import java.util.Optional;
 @SuppressWarnings("unchecked")
 public abstract class SqlImpl<Q> implements Sql<Q> {
 
-    protected Optional<Connection> connection;
+    protected Optional<HandleImpl> handle;
     protected final String sql;
-    protected final List<SqlParam<?>> parameters;
+    protected final SqlParams parameters = new SqlParams();
     protected Map<String, String> context = new HashMap<>();
 
+    // Null to use the default statement timeout
+    protected Duration timeout;
+
+    /**
+     * @param handle a database handle
+     * @param sql    some SQL statement(s)
+     */
+    protected SqlImpl(HandleImpl handle, String sql) {
+        this.handle = Optional.of(handle);
+        this.sql = sql;
+    }
+
     /**
      * @param connection a database connection
      * @param sql        some SQL statement(s)
      */
     protected SqlImpl(Connection connection, String sql) {
-        this.connection = Optional.of(connection);
-        this.sql = sql;
-        this.parameters = new LinkedList<>();
+        this(new HandleImpl(connection, HandleSettings.builder().build()), sql);
     }
 
     protected SqlImpl(String sql) {
-        this.connection = Optional.empty();
+        this.handle = Optional.empty();
         this.sql = sql;
-        this.parameters = new LinkedList<>();
     }
 
     @Override
     public Q setHandleOnce(Handle handle) throws StorageException {
-        if(connection.isPresent()) {
+        if (this.handle.isPresent()) {
             throw new StorageException("Handle was already set", null);
         }
-        connection = Optional.of(((HandleImpl)handle).getConnection());
+        this.handle = Optional.of((HandleImpl) handle);
         return (Q) this;
     }
 
+    protected HandleImpl getHandle() throws StorageException {
+        return handle.orElseThrow(() -> new StorageException("Handle not set. Use setHandleOnce(...) to set the Handle before executing the query.", null));
+    }
+
     @Override
     public Q setContext(String key, String value) {
         context.put(key, value);
         return (Q) this;
     }
 
+    /**
+     * @see Sql#setTimeout(Duration)
+     */
+    @Override
+    public Q setTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Statement timeout must not be negative, got " + timeout);
+        }
+        this.timeout = timeout;
+        return (Q) this;
+    }
+
     /**
      * @see Sql#bind(int, java.lang.String)
      */
     @Override
     public Q bind(int position, String value) {
-        this.parameters.add(new StringSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.VARCHAR);
+        } else {
+            parameters.setString(position, value);
+        }
         return (Q) this;
     }
 
@@ -96,7 +120,20 @@ public abstract class SqlImpl<Q> implements Sql<Q> {
      */
     @Override
     public Q bind(int position, Long value) {
-        this.parameters.add(new LongSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.INTEGER);
+        } else {
+            parameters.setLong(position, value);
+        }
+        return (Q) this;
+    }
+
+    /**
+     * @see Sql#bind(int, long)
+     */
+    @Override
+    public Q bind(int position, long value) {
+        parameters.setLong(position, value);
         return (Q) this;
     }
 
@@ -105,7 +142,29 @@ public abstract class SqlImpl<Q> implements Sql<Q> {
      */
     @Override
     public Q bind(int position, Integer value) {
-        this.parameters.add(new IntegerSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.INTEGER);
+        } else {
+            parameters.setInt(position, value);
+        }
+        return (Q) this;
+    }
+
+    /**
+     * @see Sql#bind(int, int)
+     */
+    @Override
+    public Q bind(int position, int value) {
+        parameters.setInt(position, value);
+        return (Q) this;
+    }
+
+    /**
+     * @see Sql#bind(int, boolean)
+     */
+    @Override
+    public Q bind(int position, boolean value) {
+        parameters.setBoolean(position, value);
         return (Q) this;
     }
 
@@ -114,7 +173,11 @@ public abstract class SqlImpl<Q> implements Sql<Q> {
      */
     @Override
     public Q bind(int position, Enum<?> value) {
-        this.parameters.add(new EnumSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.VARCHAR);
+        } else {
+            parameters.setString(position, value.name());
+        }
         return (Q) this;
     }
 
@@ -123,13 +186,21 @@ public abstract class SqlImpl<Q> implements Sql<Q> {
      */
     @Override
     public Q bind(int position, Date value) {
-        this.parameters.add(new DateSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.TIMESTAMP);
+        } else {
+            parameters.setTimestamp(position, value.getTime());
+        }
         return (Q) this;
     }
 
     @Override
     public Q bind(int position, Instant value) {
-        this.parameters.add(new InstantSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.TIMESTAMP);
+        } else {
+            parameters.setTimestamp(position, value);
+        }
         return (Q) this;
     }
 
@@ -138,17 +209,59 @@ public abstract class SqlImpl<Q> implements Sql<Q> {
      */
     @Override
     public Q bind(int position, byte[] value) {
-        this.parameters.add(new BytesSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.VARBINARY);
+        } else {
+            parameters.setBytes(position, value);
+        }
         return (Q) this;
     }
 
     @Override
     public Q bind(int position, ContentHandle value) {
-        this.parameters.add(new ContentHandleSqlParam(position, value));
+        if (value == null) {
+            parameters.setNull(position, Types.VARBINARY);
+        } else {
+            parameters.setContent(position, value);
+        }
         return (Q) this;
     }
 
-    protected void bindParametersTo(PreparedStatement statement) {
-        this.parameters.forEach(param -> param.bindTo(statement));
+    /**
+     * Wraps a SQL error of this statement, and records it in the metrics.
+     */
+    protected StorageException storageException(SQLException e) {
+        handle.ifPresent(h -> h.getMetrics().recordError(context, e));
+        return new StorageException(context, e);
+    }
+
+    /**
+     * Same as {@link #storageException(SQLException)}, but returns a {@link io.apicurio.common.apps.storage.exceptions.StorageTimeoutException}
+     * if the statement timed out.
+     */
+    protected StorageException storageException(SQLException e, StatementTimeouts.Watch watch) {
+        var rval = StatementTimeouts.timeoutException(e, watch, context);
+        if (rval != null) {
+            handle.ifPresent(h -> h.getMetrics().recordError(context, e));
+            return rval;
+        }
+        return storageException(e);
+    }
+
+    /**
+     * Returns the statement (usually taken from the statement cache) with all bound parameters set.
+     * The statement is only acquired when it is executed, so binding never fails, and a statement that is never executed
+     * does not hold a statement of the handle. The caller is responsible for releasing the statement using the handle.
+     */
+    protected PreparedStatement prepareStatement() throws StorageException, SQLException {
+        HandleImpl handle = getHandle();
+        PreparedStatement rval = handle.prepareStatement(sql);
+        try {
+            parameters.bindTo(rval);
+        } catch (SQLException e) {
+            handle.discardStatement(rval);
+            throw e;
+        }
+        return rval;
     }
 }
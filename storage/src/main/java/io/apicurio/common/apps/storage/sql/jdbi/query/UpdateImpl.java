@@ -17,10 +17,16 @@
 package io.apicurio.common.apps.storage.sql.jdbi.query;
 
 import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.exceptions.StorageTimeoutException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.StatementTimeouts;
+import io.apicurio.common.apps.storage.sql.jdbi.metrics.StorageMetrics;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,6 +34,26 @@ import java.util.Map;
  */
 public class UpdateImpl extends SqlImpl<Update> implements Update {
 
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Batch state, the statement is kept open between add() and executeBatch()
+    private PreparedStatement batchStatement;
+    private int batchPending;
+    private int[] batchCounts = new int[0];
+    private int batchCountsSize;
+    // Parameters are cleared when a row is added, types of the first row of the pending batch are kept for the slow query log
+    private List<String> batchTypes = List.of();
+
+    /**
+     * Constructor.
+     *
+     * @param handle a DB handle
+     * @param sql    some SQL statement(s)
+     */
+    public UpdateImpl(HandleImpl handle, String sql) {
+        super(handle, sql);
+    }
+
     /**
      * Constructor.
      *
@@ -47,11 +73,32 @@ public class UpdateImpl extends SqlImpl<Update> implements Update {
      */
     @Override
     public int execute() throws StorageException {
-        try (PreparedStatement statement = connection.orElseThrow(() -> new StorageException("Handle not set. Use setHandleOnce(...) to set the Handle before executing the query.", null)).prepareStatement(sql)) {
-            bindParametersTo(statement);
-            return statement.executeUpdate();
+        HandleImpl handle = getHandle();
+        PreparedStatement statement = null;
+        StatementTimeouts.Watch watch = null;
+        try {
+            statement = prepareStatement();
+            watch = handle.getStatementTimeouts().start(statement, timeout, context);
+            long start = handle.startTimer();
+            int rval;
+            try {
+                rval = statement.executeUpdate();
+            } finally {
+                watch.stop();
+            }
+            handle.getMetrics().recordExecution(context, StorageMetrics.OPERATION_UPDATE, start);
+            handle.recordSlowQuery(sql, parameters, context, StorageMetrics.OPERATION_UPDATE, start, rval);
+            handle.recordWrite(context);
+            handle.releaseStatement(sql, statement);
+            return rval;
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            if (statement != null) {
+                handle.discardStatement(statement);
+            }
+            throw watch != null ? storageException(e, watch) : storageException(e);
+        } catch (StorageTimeoutException e) {
+            handle.discardStatement(statement);
+            throw e;
         }
     }
 
@@ -60,11 +107,154 @@ public class UpdateImpl extends SqlImpl<Update> implements Update {
      */
     @Override
     public void executeNoUpdate() throws StorageException {
-        try (PreparedStatement statement = connection.orElseThrow(() -> new StorageException("Handle not set. Use setHandleOnce(...) to set the Handle before executing the query.", null)).prepareStatement(sql)) {
-            bindParametersTo(statement);
-            statement.execute();
+        HandleImpl handle = getHandle();
+        PreparedStatement statement = null;
+        StatementTimeouts.Watch watch = null;
+        try {
+            statement = prepareStatement();
+            watch = handle.getStatementTimeouts().start(statement, timeout, context);
+            long start = handle.startTimer();
+            try {
+                statement.execute();
+            } finally {
+                watch.stop();
+            }
+            handle.getMetrics().recordExecution(context, StorageMetrics.OPERATION_UPDATE, start);
+            handle.recordSlowQuery(sql, parameters, context, StorageMetrics.OPERATION_UPDATE, start, 0);
+            handle.recordWrite(context);
+            handle.releaseStatement(sql, statement);
+        } catch (SQLException e) {
+            if (statement != null) {
+                handle.discardStatement(statement);
+            }
+            throw watch != null ? storageException(e, watch) : storageException(e);
+        } catch (StorageTimeoutException e) {
+            handle.discardStatement(statement);
+            throw e;
+        }
+    }
+
+    /**
+     * @see Update#setBatchSize(int)
+     */
+    @Override
+    public Update setBatchSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + size);
+        }
+        this.batchSize = size;
+        return this;
+    }
+
+    /**
+     * @see Update#add()
+     */
+    @Override
+    public Update add() throws StorageException {
+        HandleImpl handle = getHandle();
+        try {
+            if (batchStatement == null) {
+                batchStatement = prepareStatement();
+            } else {
+                parameters.bindTo(batchStatement);
+            }
+            batchStatement.addBatch();
+            if (batchPending == 0) {
+                batchTypes = parameters.getTypes();
+            }
+            parameters.clear();
+            batchPending++;
+            if (batchPending >= batchSize) {
+                flushBatch();
+            }
+            return this;
         } catch (SQLException e) {
-            throw new StorageException(context, e);
+            discardBatch(handle);
+            throw storageException(e);
+        } catch (StorageTimeoutException e) {
+            discardBatch(handle);
+            throw e;
+        }
+    }
+
+    /**
+     * @see Update#executeBatch()
+     */
+    @Override
+    public int[] executeBatch() throws StorageException {
+        HandleImpl handle = getHandle();
+        if (!parameters.isEmpty()) {
+            throw new StorageException("Parameters were bound but not added to the batch. Call add() after binding each row.", context);
+        }
+        try {
+            if (batchStatement != null) {
+                flushBatch();
+                handle.releaseStatement(sql, batchStatement);
+                batchStatement = null;
+            }
+            int[] rval = Arrays.copyOf(batchCounts, batchCountsSize);
+            batchCounts = new int[0];
+            batchCountsSize = 0;
+            return rval;
+        } catch (SQLException e) {
+            discardBatch(handle);
+            throw storageException(e);
+        } catch (StorageTimeoutException e) {
+            discardBatch(handle);
+            throw e;
+        }
+    }
+
+    private void flushBatch() throws SQLException, StorageException {
+        if (batchPending == 0) {
+            return;
+        }
+        HandleImpl handle = getHandle();
+        var watch = handle.getStatementTimeouts().start(batchStatement, timeout, context);
+        long start = handle.startTimer();
+        int[] counts;
+        try {
+            counts = batchStatement.executeBatch();
+        } catch (SQLException e) {
+            var timeoutException = StatementTimeouts.timeoutException(e, watch, context);
+            if (timeoutException != null) {
+                handle.getMetrics().recordError(context, e);
+                throw timeoutException;
+            }
+            throw e;
+        } finally {
+            watch.stop();
+        }
+        handle.getMetrics().recordExecution(context, StorageMetrics.OPERATION_BATCH, start);
+        handle.recordSlowQuery(sql, batchTypes, context, StorageMetrics.OPERATION_BATCH, start, affectedRows(counts));
+        handle.recordWrite(context);
+        batchPending = 0;
+        if (batchCountsSize + counts.length > batchCounts.length) {
+            batchCounts = Arrays.copyOf(batchCounts, Math.max(batchCounts.length * 2, batchCountsSize + counts.length));
+        }
+        System.arraycopy(counts, 0, batchCounts, batchCountsSize, counts.length);
+        batchCountsSize += counts.length;
+    }
+
+    private static long affectedRows(int[] counts) {
+        long rval = 0;
+        for (int count : counts) {
+            // Drivers may report Statement.SUCCESS_NO_INFO
+            if (count > 0) {
+                rval += count;
+            }
+        }
+        return rval;
+    }
+
+    private void discardBatch(HandleImpl handle) {
+        if (batchStatement != null) {
+            handle.discardStatement(batchStatement);
+            batchStatement = null;
         }
+        parameters.clear();
+        batchPending = 0;
+        batchCounts = new int[0];
+        batchCountsSize = 0;
     }
 }
@@ -24,7 +24,9 @@ import java.sql.Types;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class BytesSqlParam extends SqlParam<byte[]> {
 
     public BytesSqlParam(int position, byte[] value) {
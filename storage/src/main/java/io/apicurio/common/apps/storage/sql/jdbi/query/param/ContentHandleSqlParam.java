@@ -25,7 +25,9 @@ import java.sql.Types;
 
 /**
  * @author Jakub Senko <em>m@jsenko.net</em>
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class ContentHandleSqlParam extends SqlParam<ContentHandle> {
 
     public ContentHandleSqlParam(int position, ContentHandle value) {
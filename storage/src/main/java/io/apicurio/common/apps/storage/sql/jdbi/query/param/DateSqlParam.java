@@ -26,7 +26,9 @@ import java.util.Date;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class DateSqlParam extends SqlParam<Date> {
 
     public DateSqlParam(int position, Date value) {
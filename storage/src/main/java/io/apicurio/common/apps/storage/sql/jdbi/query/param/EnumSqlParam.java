@@ -24,7 +24,9 @@ import java.sql.Types;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class EnumSqlParam extends SqlParam<Enum<?>> {
 
     public EnumSqlParam(int position, Enum<?> value) {
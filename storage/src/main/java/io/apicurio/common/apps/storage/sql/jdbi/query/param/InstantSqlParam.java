@@ -26,7 +26,9 @@ import java.time.Instant;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class InstantSqlParam extends SqlParam<Instant> {
 
     public InstantSqlParam(int position, Instant value) {
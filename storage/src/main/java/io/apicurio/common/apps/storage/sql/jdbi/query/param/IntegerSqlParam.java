@@ -24,7 +24,9 @@ import java.sql.Types;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class IntegerSqlParam extends SqlParam<Integer> {
 
     public IntegerSqlParam(int position, Integer value) {
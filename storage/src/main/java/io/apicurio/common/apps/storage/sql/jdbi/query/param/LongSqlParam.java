@@ -24,7 +24,9 @@ import java.sql.Types;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class LongSqlParam extends SqlParam<Long> {
 
     public LongSqlParam(int position, Long value) {
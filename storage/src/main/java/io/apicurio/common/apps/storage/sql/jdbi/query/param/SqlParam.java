@@ -20,7 +20,9 @@ import java.sql.PreparedStatement;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated Parameters are stored in {@link SqlParams}, this class is no longer used and will be removed.
  */
+@Deprecated
 public abstract class SqlParam<T> {
 
     protected final int position;
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query.param;
+
+import io.apicurio.common.apps.content.handle.ContentHandle;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parameters bound to a statement, stored in parallel arrays.
+ * <p>
+ * Primitive values are kept unboxed, and no object is created per parameter.
+ * The backing arrays are only allocated if parameters are stored.
+ * Positions are zero-based, as in {@link io.apicurio.common.apps.storage.sql.jdbi.query.Sql}.
+ * <p>
+ * The kinds of bound values (but not the values) are remembered, see {@link #getTypes()}.
+ * <p>
+ * The stored parameters can be compared with the parameters of another statement, see {@link #cacheKey()}.
+ *
+ * @author Jakub Senko <em>m@jsenko.net</em>
+ */
+public class SqlParams {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INT = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DATE = 5;
+    private static final byte INSTANT = 6;
+    private static final byte BYTES = 7;
+    private static final byte CONTENT_HANDLE = 8;
+
+    private static final String[] TYPE_NAMES = {
+            "NULL", "STRING", "LONG", "INT", "BOOLEAN", "TIMESTAMP", "TIMESTAMP", "BYTES", "BYTES"
+    };
+
+    private static final int MAX_TYPED_POSITIONS = 16;
+
+    // Position shifted left by 8 bits, combined with the kind of the value
+    private int[] slots;
+    // Primitive values, the millis of a Date, or the SQL type of a null
+    private long[] primitives;
+    private Object[] objects;
+    private int size;
+
+    // Kind + 1 of the value at each of the first 16 positions, 4 bits per position, 0 if not bound
+    private long kinds;
+    private int positions;
+
+    public void setNull(int position, int sqlType) {
+        add(position, NULL, sqlType, null);
+    }
+
+    public void setString(int position, String value) {
+        add(position, STRING, 0, value);
+    }
+
+    public void setLong(int position, long value) {
+        add(position, LONG, value, null);
+    }
+
+    public void setInt(int position, int value) {
+        add(position, INT, value, null);
+    }
+
+    public void setBoolean(int position, boolean value) {
+        add(position, BOOLEAN, value ? 1 : 0, null);
+    }
+
+    public void setTimestamp(int position, long epochMillis) {
+        add(position, DATE, epochMillis, null);
+    }
+
+    public void setTimestamp(int position, Instant value) {
+        add(position, INSTANT, 0, value);
+    }
+
+    public void setBytes(int position, byte[] value) {
+        add(position, BYTES, 0, value);
+    }
+
+    public void setContent(int position, ContentHandle value) {
+        add(position, CONTENT_HANDLE, 0, value);
+    }
+
+    /**
+     * @return true if there are no parameters waiting to be used by a statement execution
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return names of the kinds of values bound to each position, values of a batch row replace the previous row,
+     * "?" if not known
+     */
+    public List<String> getTypes() {
+        var rval = new ArrayList<String>(positions);
+        for (int position = 0; position < positions; position++) {
+            int kind = position < MAX_TYPED_POSITIONS ? (int) (kinds >>> (position * 4)) & 0xF : 0;
+            rval.add(kind == 0 ? "?" : TYPE_NAMES[kind - 1]);
+        }
+        return rval;
+    }
+
+    /**
+     * @return a copy of the stored parameters, which is equal to the key of other parameters with the same values
+     * bound to the same positions, or null if a content handle is bound
+     */
+    public Object cacheKey() {
+        var values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            if ((byte) slots[i] == CONTENT_HANDLE) {
+                return null;
+            }
+            values[i] = objects[i] instanceof byte[] ? ((byte[]) objects[i]).clone() : objects[i];
+        }
+        return new Key(Arrays.copyOf(slots, size), size == 0 ? new long[0] : Arrays.copyOf(primitives, size), values);
+    }
+
+    /**
+     * Forget the parameters, e.g. after they were used by a statement execution.
+     */
+    public void clear() {
+        if (objects != null) {
+            Arrays.fill(objects, 0, size, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Set the stored parameters on the statement.
+     */
+    public void bindTo(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            bind(statement, i);
+        }
+    }
+
+    private void add(int position, byte kind, long primitive, Object object) {
+        if (position < MAX_TYPED_POSITIONS) {
+            int shift = position * 4;
+            kinds = kinds & ~(0xFL << shift) | (long) (kind + 1) << shift;
+        }
+        if (position >= positions) {
+            positions = position + 1;
+        }
+        if (slots == null) {
+            slots = new int[INITIAL_CAPACITY];
+            primitives = new long[INITIAL_CAPACITY];
+            objects = new Object[INITIAL_CAPACITY];
+        } else if (size == slots.length) {
+            int capacity = size * 2;
+            slots = Arrays.copyOf(slots, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        slots[size] = position << 8 | kind;
+        primitives[size] = primitive;
+        objects[size] = object;
+        size++;
+    }
+
+    private void bind(PreparedStatement statement, int index) throws SQLException {
+        bind(statement, slots[index] >>> 8, (byte) slots[index], primitives[index], objects[index]);
+    }
+
+    private static void bind(PreparedStatement statement, int position, byte kind, long primitive, Object object) throws SQLException {
+        int index1 = position + 1;
+        switch (kind) {
+            case NULL:
+                statement.setNull(index1, (int) primitive);
+                break;
+            case STRING:
+                statement.setString(index1, (String) object);
+                break;
+            case LONG:
+                statement.setLong(index1, primitive);
+                break;
+            case INT:
+                statement.setInt(index1, (int) primitive);
+                break;
+            case BOOLEAN:
+                statement.setBoolean(index1, primitive != 0);
+                break;
+            case DATE:
+                statement.setTimestamp(index1, new Timestamp(primitive));
+                break;
+            case INSTANT:
+                statement.setTimestamp(index1, Timestamp.from((Instant) object));
+                break;
+            case BYTES:
+                statement.setBytes(index1, (byte[]) object);
+                break;
+            case CONTENT_HANDLE:
+                var content = (ContentHandle) object;
+                if (!content.isStreamed()) {
+                    statement.setBytes(index1, content.bytes());
+                } else if (content.getStreamLength() >= 0) {
+                    // A new stream for every execution, e.g. when a statement is retried
+                    statement.setBinaryStream(index1, content.stream(), content.getStreamLength());
+                } else {
+                    // Drivers buffer a stream of unknown length themselves, e.g. PgJDBC in a temporary file if it is large
+                    statement.setBinaryStream(index1, content.stream());
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown parameter kind: " + kind);
+        }
+    }
+
+    private static class Key {
+
+        private final int[] slots;
+        private final long[] primitives;
+        private final Object[] objects;
+        private final int hash;
+
+        Key(int[] slots, long[] primitives, Object[] objects) {
+            this.slots = slots;
+            this.primitives = primitives;
+            this.objects = objects;
+            this.hash = 31 * (31 * Arrays.hashCode(slots) + Arrays.hashCode(primitives)) + Arrays.deepHashCode(objects);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(slots, other.slots) && Arrays.equals(primitives, other.primitives)
+                    && Arrays.deepEquals(objects, other.objects);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -24,7 +24,9 @@ import java.sql.Types;
 
 /**
  * @author eric.wittmann@gmail.com
+ * @deprecated See {@link SqlParam}.
  */
+@Deprecated
 public class StringSqlParam extends SqlParam<String> {
 
     public StringSqlParam(int position, String value) {
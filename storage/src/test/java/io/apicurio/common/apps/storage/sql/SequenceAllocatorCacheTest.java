@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SequenceAllocatorCacheTest {
+
+    @Test
+    public void testAllocatorIsReused() {
+        var created = new ArrayList<String>();
+        var cache = new SequenceAllocatorCache(10, Duration.ofHours(1), (tenantId, sequenceKey) -> {
+            created.add(tenantId + "/" + sequenceKey);
+            return new SequenceBlockAllocator(sequenceKey, 10, (key, blockSize) -> blockSize, Runnable::run);
+        });
+
+        var allocator = cache.get("t1", "ids");
+        Assertions.assertSame(allocator, cache.get("t1", "ids"));
+        Assertions.assertEquals(List.of("t1/ids"), created);
+    }
+
+    @Test
+    public void testTenantsAndSequencesHaveSeparateAllocators() {
+        var cache = new SequenceAllocatorCache(10, Duration.ofHours(1), (tenantId, sequenceKey) ->
+                new SequenceBlockAllocator(sequenceKey, 10, (key, blockSize) -> blockSize, Runnable::run));
+
+        var allocator = cache.get("t1", "ids");
+        Assertions.assertNotSame(allocator, cache.get("t2", "ids"));
+        Assertions.assertNotSame(allocator, cache.get("t1", "other"));
+        Assertions.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvictedWhenFull() throws InterruptedException {
+        var created = new ArrayList<String>();
+        var cache = new SequenceAllocatorCache(2, Duration.ofHours(1), (tenantId, sequenceKey) -> {
+            created.add(tenantId + "/" + sequenceKey);
+            return new SequenceBlockAllocator(sequenceKey, 10, (key, blockSize) -> blockSize, Runnable::run);
+        });
+
+        var first = cache.get("t1", "ids");
+        Thread.sleep(1);
+        cache.get("t2", "ids");
+        Thread.sleep(1);
+        // Used more recently than t2
+        Assertions.assertSame(first, cache.get("t1", "ids"));
+        Thread.sleep(1);
+        cache.get("t3", "ids");
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertSame(first, cache.get("t1", "ids"));
+
+        // The allocator of t2 has been dropped
+        cache.get("t2", "ids");
+        Assertions.assertEquals(List.of("t1/ids", "t2/ids", "t3/ids", "t2/ids"), created);
+    }
+
+    @Test
+    public void testIdleAllocatorIsEvicted() throws InterruptedException {
+        var cache = new SequenceAllocatorCache(10, Duration.ofMillis(20), (tenantId, sequenceKey) ->
+                new SequenceBlockAllocator(sequenceKey, 10, (key, blockSize) -> blockSize, Runnable::run));
+
+        var allocator = cache.get("t1", "ids");
+        Thread.sleep(50);
+        cache.get("t2", "ids");
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertNotSame(allocator, cache.get("t1", "ids"));
+    }
+
+    @Test
+    public void testInvalidConfigurationIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new SequenceAllocatorCache(0, Duration.ofHours(1), (tenantId, sequenceKey) -> null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new SequenceAllocatorCache(10, Duration.ZERO, (tenantId, sequenceKey) -> null));
+    }
+}
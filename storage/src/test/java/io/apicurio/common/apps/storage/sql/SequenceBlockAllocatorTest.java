@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SequenceBlockAllocatorTest {
+
+    @Test
+    public void testValuesAreConsecutiveAcrossBlocks() throws StorageException {
+        var stored = new AtomicLong();
+        var allocator = new SequenceBlockAllocator("test", 10, (key, blockSize) -> stored.addAndGet(blockSize), Runnable::run);
+
+        for (long expected = 1; expected <= 25; expected++) {
+            Assertions.assertEquals(expected, allocator.next());
+        }
+        // Three blocks of 10 have been reserved, the rest of the last one is unused
+        Assertions.assertEquals(30, stored.get());
+    }
+
+    @Test
+    public void testNextBlockIsReservedAtLowWaterMark() throws StorageException {
+        var stored = new AtomicLong();
+        var reservations = new AtomicInteger();
+        var allocator = new SequenceBlockAllocator("test", 8, (key, blockSize) -> {
+            reservations.incrementAndGet();
+            return stored.addAndGet(blockSize);
+        }, Runnable::run);
+
+        // The next block is reserved when a quarter of the current one is left
+        for (int i = 1; i < 6; i++) {
+            allocator.next();
+        }
+        Assertions.assertEquals(1, reservations.get());
+        Assertions.assertEquals(6, allocator.next());
+        Assertions.assertEquals(2, reservations.get());
+
+        // The prefetched block is used, without another reservation
+        for (long expected = 7; expected <= 9; expected++) {
+            Assertions.assertEquals(expected, allocator.next());
+        }
+        Assertions.assertEquals(2, reservations.get());
+    }
+
+    @Test
+    public void testFailedPrefetchIsRetried() throws StorageException {
+        var stored = new AtomicLong();
+        var calls = new AtomicInteger();
+        var allocator = new SequenceBlockAllocator("test", 4, (key, blockSize) -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new StorageException("Prefetch failed", null);
+            }
+            return stored.addAndGet(blockSize);
+        }, Runnable::run);
+
+        for (long expected = 1; expected <= 8; expected++) {
+            Assertions.assertEquals(expected, allocator.next());
+        }
+        // The second block is reserved again when it is needed
+        Assertions.assertEquals(12, stored.get());
+    }
+
+    @Test
+    public void testReservationFailureIsThrown() {
+        var allocator = new SequenceBlockAllocator("test", 4, (key, blockSize) -> {
+            throw new StorageException("Database unavailable", null);
+        }, Runnable::run);
+
+        var ex = Assertions.assertThrows(StorageException.class, allocator::next);
+        Assertions.assertEquals("Database unavailable", ex.getMessage());
+    }
+
+    @Test
+    public void testConcurrentValuesAreUnique() throws Exception {
+        var stored = new AtomicLong();
+        ExecutorService reservationExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            var allocator = new SequenceBlockAllocator("test", 16, (key, blockSize) -> stored.addAndGet(blockSize), reservationExecutor);
+            Set<Long> values = ConcurrentHashMap.newKeySet();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(callers.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        Assertions.assertTrue(values.add(allocator.next()));
+                    }
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+            Assertions.assertEquals(8000, values.size());
+            Assertions.assertTrue(stored.get() >= 8000);
+        } finally {
+            callers.shutdownNow();
+            reservationExecutor.shutdownNow();
+        }
+    }
+}
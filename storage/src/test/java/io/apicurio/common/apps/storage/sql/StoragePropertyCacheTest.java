@@ -0,0 +1,169 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StoragePropertyCacheTest {
+
+    @Test
+    public void testValuesAndMissesAreCached() throws StorageException {
+        var versionReads = new AtomicInteger();
+        var cache = new StoragePropertyCache(Duration.ofHours(1), () -> {
+            versionReads.incrementAndGet();
+            return 1;
+        });
+        var loads = new AtomicInteger();
+        Map<String, String> database = Map.of("foo", "1");
+        StoragePropertyCache.PropertyLoader loader = key -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(database.get(key));
+        };
+
+        Assertions.assertEquals(Optional.of("1"), cache.get("foo", loader));
+        Assertions.assertEquals(Optional.of("1"), cache.get("foo", loader));
+        Assertions.assertEquals(Optional.empty(), cache.get("bar", loader));
+        Assertions.assertEquals(Optional.empty(), cache.get("bar", loader));
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertEquals(1, versionReads.get());
+    }
+
+    @Test
+    public void testValuesAreKeptWhileVersionIsUnchanged() throws StorageException {
+        var versionReads = new AtomicInteger();
+        // Every get checks the version
+        var cache = new StoragePropertyCache(Duration.ofNanos(1), () -> {
+            versionReads.incrementAndGet();
+            return 1;
+        });
+        Map<String, String> database = new HashMap<>();
+        database.put("foo", "1");
+
+        cache.get("foo", key -> Optional.ofNullable(database.get(key)));
+        database.put("foo", "2");
+        Assertions.assertEquals(Optional.of("1"), cache.get("foo", key -> Assertions.fail("Loaded again")));
+        Assertions.assertEquals(2, versionReads.get());
+    }
+
+    @Test
+    public void testValuesAreDroppedWhenAnotherNodeWrites() throws StorageException {
+        var version = new AtomicLong(1);
+        var cache = new StoragePropertyCache(Duration.ofNanos(1), version::get);
+        Map<String, String> database = new HashMap<>();
+        database.put("foo", "1");
+
+        cache.get("foo", key -> Optional.ofNullable(database.get(key)));
+        database.put("foo", "2");
+        version.incrementAndGet();
+        Assertions.assertEquals(Optional.of("2"), cache.get("foo", key -> Optional.ofNullable(database.get(key))));
+    }
+
+    @Test
+    public void testVersionIsNotCheckedWithinInterval() throws StorageException {
+        var version = new AtomicLong(1);
+        var versionReads = new AtomicInteger();
+        var cache = new StoragePropertyCache(Duration.ofHours(1), () -> {
+            versionReads.incrementAndGet();
+            return version.get();
+        });
+        Map<String, String> database = new HashMap<>();
+        database.put("foo", "1");
+
+        cache.get("foo", key -> Optional.ofNullable(database.get(key)));
+        database.put("foo", "2");
+        version.incrementAndGet();
+        // Stale for at most the check interval
+        Assertions.assertEquals(Optional.of("1"), cache.get("foo", key -> Optional.ofNullable(database.get(key))));
+        Assertions.assertEquals(1, versionReads.get());
+    }
+
+    @Test
+    public void testConsecutiveLocalWriteKeepsOtherValues() throws StorageException {
+        var version = new AtomicLong(1);
+        var cache = new StoragePropertyCache(Duration.ofNanos(1), version::get);
+        var loads = new AtomicInteger();
+        Map<String, String> database = new HashMap<>();
+        database.put("foo", "1");
+        database.put("bar", "1");
+        StoragePropertyCache.PropertyLoader loader = key -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(database.get(key));
+        };
+
+        cache.get("foo", loader);
+        cache.get("bar", loader);
+        database.put("foo", "2");
+        cache.written("foo", "2", version.incrementAndGet());
+        Assertions.assertEquals(Optional.of("2"), cache.get("foo", loader));
+        Assertions.assertEquals(Optional.of("1"), cache.get("bar", loader));
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testLocalWriteAfterRemoteWriteDropsOtherValues() throws StorageException {
+        var version = new AtomicLong(1);
+        var versionReads = new AtomicInteger();
+        var cache = new StoragePropertyCache(Duration.ofHours(1), () -> {
+            versionReads.incrementAndGet();
+            return version.get();
+        });
+        var loads = new AtomicInteger();
+        Map<String, String> database = new HashMap<>();
+        database.put("foo", "1");
+        database.put("bar", "1");
+        StoragePropertyCache.PropertyLoader loader = key -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(database.get(key));
+        };
+
+        cache.get("foo", loader);
+        cache.get("bar", loader);
+        // Another node has written bar in the meantime
+        database.put("bar", "2");
+        version.incrementAndGet();
+        database.put("foo", "2");
+        cache.written("foo", "2", version.incrementAndGet());
+        Assertions.assertEquals(Optional.of("2"), cache.get("foo", loader));
+        Assertions.assertEquals(Optional.of("2"), cache.get("bar", loader));
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertEquals(2, versionReads.get());
+    }
+
+    @Test
+    public void testDeletedValueIsCachedAsMissing() throws StorageException {
+        var version = new AtomicLong(1);
+        var cache = new StoragePropertyCache(Duration.ofHours(1), version::get);
+
+        cache.get("foo", key -> Optional.of("1"));
+        cache.written("foo", null, version.incrementAndGet());
+        Assertions.assertEquals(Optional.empty(), cache.get("foo", key -> Assertions.fail("Loaded again")));
+    }
+
+    @Test
+    public void testCheckIntervalMustBePositive() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StoragePropertyCache(Duration.ZERO, () -> 1));
+    }
+}
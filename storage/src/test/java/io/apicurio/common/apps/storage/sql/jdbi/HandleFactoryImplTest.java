@@ -0,0 +1,179 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.configuration.supplier.AgroalPropertiesReader;
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.LongMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * The factory is wired by hand, there is no transaction manager.
+ * The pool has a single connection, so an operation fails to get a connection if a previous one did not give it back.
+ */
+public class HandleFactoryImplTest {
+
+    private static final String SELECT_IDS = "SELECT id FROM item WHERE id > ? ORDER BY id LIMIT ?";
+
+    private AgroalDataSource dataSource;
+
+    private HandleFactoryImpl handles;
+
+    @BeforeEach
+    public void setUp() throws SQLException, StorageException {
+        dataSource = AgroalDataSource.from(new AgroalPropertiesReader().readProperties(Map.of(
+                AgroalPropertiesReader.JDBC_URL, "jdbc:h2:mem:handle-factory;DB_CLOSE_DELAY=-1",
+                AgroalPropertiesReader.MAX_SIZE, "1",
+                AgroalPropertiesReader.ACQUISITION_TIMEOUT_MS, "1000")).get());
+        handles = new HandleFactoryImpl();
+        handles.dataSource = dataSource;
+        handles.transactionRegistry = new NoTransactionRegistry();
+        handles.log = LoggerFactory.getLogger(HandleFactoryImpl.class);
+        handles.handleSettings = HandleSettings.builder().build();
+        handles.withHandle(handle -> {
+            handle.createUpdate("CREATE TABLE item (id BIGINT PRIMARY KEY)").execute();
+            var insert = handle.createUpdate("INSERT INTO item (id) VALUES (?)");
+            for (long id = 1; id <= 7; id++) {
+                insert.bind(0, id).add();
+            }
+            return insert.executeBatch();
+        });
+    }
+
+    @AfterEach
+    public void tearDown() throws StorageException {
+        handles.withHandle(handle -> handle.createUpdate("DROP TABLE item").execute());
+        dataSource.close();
+    }
+
+    private long countItems() throws StorageException {
+        return handles.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM item").map(new LongMapper()).one());
+    }
+
+    @Test
+    public void testClosedCursorGivesBackConnection() throws StorageException, SQLException {
+        var connection = new Connection[1];
+        try (var ids = handles.withCursor(handle -> {
+            connection[0] = ((HandleImpl) handle).getConnection();
+            return handle.createQuery("SELECT id FROM item ORDER BY id").setFetchSize(2).map(new LongMapper());
+        })) {
+            Assertions.assertFalse(connection[0].getAutoCommit());
+            Assertions.assertEquals(List.of(1L, 2L, 3L), ids.limit(3).collect(Collectors.toList()));
+        }
+        Assertions.assertTrue(connection[0].isClosed());
+        // Fails to get the only connection of the pool, if the cursor still holds it
+        Assertions.assertEquals(7, countItems());
+        boolean autoCommit = handles.withHandle(handle -> ((HandleImpl) handle).getConnection().getAutoCommit());
+        Assertions.assertTrue(autoCommit);
+    }
+
+    @Test
+    public void testFailedCursorGivesBackConnection() throws StorageException {
+        Assertions.assertThrows(StorageException.class, () -> handles.withCursor(handle -> {
+            throw new StorageException("Query failed", null);
+        }));
+        Assertions.assertThrows(IllegalStateException.class, () -> handles.withCursor(handle -> {
+            throw new IllegalStateException();
+        }));
+        Assertions.assertEquals(7, countItems());
+    }
+
+    @Test
+    public void testKeysetPages() {
+        var queries = new AtomicInteger();
+        var pages = handles.keysetPages(3, (Long id) -> id, (handle, after, limit) -> {
+            queries.incrementAndGet();
+            return handle.createQuery(SELECT_IDS).bind(0, after != null ? after : 0L).bind(1, limit).map(new LongMapper());
+        });
+        var iterator = pages.iterator();
+        // Pages are fetched as they are consumed
+        Assertions.assertEquals(0, queries.get());
+        Assertions.assertEquals(List.of(1L, 2L, 3L), iterator.next());
+        Assertions.assertEquals(1, queries.get());
+        var rest = new ArrayList<List<Long>>();
+        iterator.forEachRemaining(rest::add);
+        Assertions.assertEquals(List.of(List.of(4L, 5L, 6L), List.of(7L)), rest);
+        // The last page is shorter than the page size, so there is no further query
+        Assertions.assertEquals(3, queries.get());
+    }
+
+    @Test
+    public void testKeysetPagesEndWithEmptyPage() {
+        var pages = handles.keysetPages(7, (Long id) -> id, (handle, after, limit) ->
+                handle.createQuery(SELECT_IDS).bind(0, after != null ? after : 0L).bind(1, limit).map(new LongMapper()));
+        Assertions.assertEquals(List.of(7), pages.map(List::size).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testKeysetPagesRejectInvalidPageSize() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> handles.keysetPages(0, (Long id) -> id, (handle, after, limit) -> null));
+    }
+
+    private static class NoTransactionRegistry implements TransactionSynchronizationRegistry {
+
+        @Override
+        public Object getTransactionKey() {
+            return null;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization sync) {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return Status.STATUS_NO_TRANSACTION;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            throw new IllegalStateException("No transaction");
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            throw new IllegalStateException("No transaction");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+public class PreparedStatementCacheTest {
+
+    private Connection connection;
+
+    private PreparedStatementCache.Stats stats;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:statement-cache");
+        stats = new PreparedStatementCache.Stats();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void testReleasedStatementIsReused() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 2, stats);
+        var statement = cache.acquire("SELECT 1");
+        cache.release("SELECT 1", statement);
+        Assertions.assertSame(statement, cache.acquire("SELECT 1"));
+        Assertions.assertEquals(1, stats.getHits());
+        Assertions.assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    public void testCheckedOutStatementIsNotShared() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 2, stats);
+        var statement = cache.acquire("SELECT 1");
+        // E.g. a nested query while the result of the first one is being consumed
+        Assertions.assertNotSame(statement, cache.acquire("SELECT 1"));
+        Assertions.assertEquals(2, stats.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyReleasedIsEvicted() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 2, stats);
+        var first = cache.acquire("SELECT 1");
+        var second = cache.acquire("SELECT 2");
+        cache.release("SELECT 1", first);
+        cache.release("SELECT 2", second);
+        // Used again, so the statement of SELECT 2 is now the least recently used
+        cache.release("SELECT 1", cache.acquire("SELECT 1"));
+        cache.release("SELECT 3", cache.acquire("SELECT 3"));
+        Assertions.assertEquals(1, stats.getEvictions());
+        Assertions.assertTrue(second.isClosed());
+        Assertions.assertFalse(first.isClosed());
+        Assertions.assertSame(first, cache.acquire("SELECT 1"));
+        Assertions.assertNotSame(second, cache.acquire("SELECT 2"));
+    }
+
+    @Test
+    public void testReleasedStatementHasNoParameters() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 2, stats);
+        var statement = cache.acquire("SELECT ?");
+        statement.setInt(1, 1);
+        cache.release("SELECT ?", statement);
+        statement = cache.acquire("SELECT ?");
+        // Fails if the previous parameter is still bound
+        statement.setInt(1, 2);
+        try (var rs = statement.executeQuery()) {
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals(2, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testDisabledCacheClosesStatements() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 0, stats);
+        var statement = cache.acquire("SELECT 1");
+        cache.release("SELECT 1", statement);
+        Assertions.assertTrue(statement.isClosed());
+        Assertions.assertNotSame(statement, cache.acquire("SELECT 1"));
+        Assertions.assertEquals(0, stats.getHits());
+    }
+
+    @Test
+    public void testDiscardedAndClearedStatementsAreClosed() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 2, stats);
+        var discarded = cache.acquire("SELECT 1");
+        cache.discard(discarded);
+        Assertions.assertTrue(discarded.isClosed());
+        var idle = cache.acquire("SELECT 2");
+        var checkedOut = cache.acquire("SELECT 3");
+        cache.release("SELECT 2", idle);
+        cache.clear();
+        Assertions.assertTrue(idle.isClosed());
+        Assertions.assertFalse(checkedOut.isClosed());
+    }
+
+    @Test
+    public void testClosedStatementIsNotReused() throws SQLException {
+        var cache = new PreparedStatementCache(connection, 2, stats);
+        var statement = cache.acquire("SELECT 1");
+        cache.release("SELECT 1", statement);
+        statement.close();
+        Assertions.assertNotSame(statement, cache.acquire("SELECT 1"));
+        Assertions.assertEquals(0, stats.getHits());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+public class QueryResultCacheTest {
+
+    private static final long TTL = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    public void testResultIsCached() throws StorageException {
+        var cache = new QueryResultCache(10, null);
+        var key = new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list");
+        var tags = new String[]{"items"};
+
+        Assertions.assertEquals("first", cache.get(key, TTL, tags, () -> "first"));
+        Assertions.assertEquals("first", cache.get(key, TTL, tags, () -> "second"));
+        Assertions.assertEquals(1, cache.getStats().getHits());
+        Assertions.assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void testKeysAreDistinct() throws StorageException {
+        var cache = new QueryResultCache(10, null);
+        var tags = new String[]{"items"};
+        var loads = new AtomicInteger();
+
+        cache.get(new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list"), TTL, tags, loads::incrementAndGet);
+        cache.get(new QueryResultCache.Key("SELECT 1", 2, Object.class, "test", "list"), TTL, tags, loads::incrementAndGet);
+        cache.get(new QueryResultCache.Key("SELECT 2", 1, Object.class, "test", "list"), TTL, tags, loads::incrementAndGet);
+        cache.get(new QueryResultCache.Key("SELECT 1", 1, String.class, "test", "list"), TTL, tags, loads::incrementAndGet);
+        // Instances of the same mapper class may map rows differently
+        cache.get(new QueryResultCache.Key("SELECT 1", 1, Object.class, "other", "list"), TTL, tags, loads::incrementAndGet);
+        cache.get(new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "one"), TTL, tags, loads::incrementAndGet);
+        Assertions.assertEquals(6, loads.get());
+    }
+
+    @Test
+    public void testResultExpires() throws StorageException {
+        var cache = new QueryResultCache(10, null);
+        var key = new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list");
+        var tags = new String[]{"items"};
+
+        cache.get(key, 0, tags, () -> "first");
+        Assertions.assertEquals("second", cache.get(key, 0, tags, () -> "second"));
+    }
+
+    @Test
+    public void testInvalidationOfTag() throws StorageException {
+        var cache = new QueryResultCache(10, null);
+        var items = new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list");
+        var owners = new QueryResultCache.Key("SELECT 2", 1, Object.class, "test", "list");
+
+        cache.get(items, TTL, new String[]{"items"}, () -> "items");
+        cache.get(owners, TTL, new String[]{"owners"}, () -> "owners");
+        cache.invalidate("items");
+        Assertions.assertEquals("items reloaded", cache.get(items, TTL, new String[]{"items"}, () -> "items reloaded"));
+        Assertions.assertEquals("owners", cache.get(owners, TTL, new String[]{"owners"}, () -> "owners reloaded"));
+    }
+
+    @Test
+    public void testResultWithSeveralTagsIsInvalidatedByAny() throws StorageException {
+        var cache = new QueryResultCache(10, null);
+        var key = new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list");
+        var tags = new String[]{"items", "owners"};
+
+        cache.get(key, TTL, tags, () -> "first");
+        cache.invalidate("owners");
+        Assertions.assertEquals("second", cache.get(key, TTL, tags, () -> "second"));
+    }
+
+    @Test
+    public void testWriteDuringLoadIsNotCached() throws StorageException {
+        var cache = new QueryResultCache(10, null);
+        var key = new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list");
+        var tags = new String[]{"items"};
+
+        cache.get(key, TTL, tags, () -> {
+            cache.invalidate("items");
+            return "stale";
+        });
+        Assertions.assertEquals("fresh", cache.get(key, TTL, tags, () -> "fresh"));
+    }
+
+    @Test
+    public void testTagWrittenInTransactionIsNotCachedUntilCompletion() throws StorageException {
+        var registry = new TestTransactionRegistry();
+        var cache = new QueryResultCache(10, registry);
+        var key = new QueryResultCache.Key("SELECT 1", 1, Object.class, "test", "list");
+        var tags = new String[]{"items"};
+
+        cache.get(key, TTL, tags, () -> "committed");
+        registry.status = Status.STATUS_ACTIVE;
+        cache.invalidate("items");
+        // Uncommitted data must not be cached
+        Assertions.assertEquals("uncommitted", cache.get(key, TTL, tags, () -> "uncommitted"));
+        Assertions.assertEquals("uncommitted again", cache.get(key, TTL, tags, () -> "uncommitted again"));
+
+        registry.complete(Status.STATUS_COMMITTED);
+        Assertions.assertEquals("written", cache.get(key, TTL, tags, () -> "written"));
+        Assertions.assertEquals("written", cache.get(key, TTL, tags, () -> "written again"));
+    }
+
+    @Test
+    public void testFullCacheEvicts() throws StorageException {
+        var cache = new QueryResultCache(2, null);
+        for (int i = 0; i < 5; i++) {
+            cache.get(new QueryResultCache.Key("SELECT 1", i, Object.class, "test", "list"), TTL, new String[]{"items"}, () -> "result");
+        }
+        Assertions.assertEquals(3, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void testMaxEntriesMustBePositive() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new QueryResultCache(0, null));
+    }
+
+    private static class TestTransactionRegistry implements TransactionSynchronizationRegistry {
+
+        int status = Status.STATUS_NO_TRANSACTION;
+
+        final Map<Object, Object> resources = new HashMap<>();
+
+        final List<Synchronization> synchronizations = new ArrayList<>();
+
+        void complete(int completionStatus) {
+            synchronizations.forEach(s -> s.afterCompletion(completionStatus));
+            synchronizations.clear();
+            resources.clear();
+            status = Status.STATUS_NO_TRANSACTION;
+        }
+
+        @Override
+        public Object getTransactionKey() {
+            return status == Status.STATUS_NO_TRANSACTION ? null : this;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+            resources.put(key, value);
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            return resources.get(key);
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization sync) {
+            synchronizations.add(sync);
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return status;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            status = Status.STATUS_MARKED_ROLLBACK;
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return status == Status.STATUS_MARKED_ROLLBACK;
+        }
+    }
+}
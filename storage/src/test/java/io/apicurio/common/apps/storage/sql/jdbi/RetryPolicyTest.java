@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyTest {
+
+    // Enough samples to see both bounds of the jitter
+    private static final int SAMPLES = 1000;
+
+    private static void assertBackoffBetween(long min, long max, RetryPolicy policy, int failedAttempts) {
+        long lowest = Long.MAX_VALUE;
+        long highest = Long.MIN_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long backoff = policy.getBackoffMillis(failedAttempts, 0);
+            lowest = Math.min(lowest, backoff);
+            highest = Math.max(highest, backoff);
+        }
+        Assertions.assertTrue(lowest >= min, "Backoff " + lowest + " is shorter than " + min);
+        Assertions.assertTrue(highest <= max, "Backoff " + highest + " is longer than " + max);
+        // Jittered, not a constant
+        Assertions.assertTrue(lowest < highest);
+    }
+
+    @Test
+    public void testBackoffGrowsExponentiallyWithJitter() {
+        var policy = RetryPolicy.exponentialBackoff(10, 100, 10_000, 60_000);
+        assertBackoffBetween(50, 100, policy, 1);
+        assertBackoffBetween(100, 200, policy, 2);
+        assertBackoffBetween(200, 400, policy, 3);
+        assertBackoffBetween(400, 800, policy, 4);
+    }
+
+    @Test
+    public void testBackoffIsLimitedByMaximum() {
+        var policy = RetryPolicy.exponentialBackoff(100, 100, 1000, Long.MAX_VALUE / 2);
+        assertBackoffBetween(500, 1000, policy, 5);
+        // No overflow of the shift
+        assertBackoffBetween(500, 1000, policy, 99);
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        var policy = RetryPolicy.exponentialBackoff(3, 10, 100, 60_000);
+        Assertions.assertTrue(policy.getBackoffMillis(2, 0) >= 0);
+        Assertions.assertEquals(-1, policy.getBackoffMillis(3, 0));
+        Assertions.assertEquals(-1, policy.getBackoffMillis(4, 0));
+    }
+
+    @Test
+    public void testGivesUpWhenNextAttemptWouldMissDeadline() {
+        var policy = RetryPolicy.exponentialBackoff(10, 100, 100, 1000);
+        Assertions.assertTrue(policy.getBackoffMillis(1, 900) >= 0);
+        // The shortest backoff is 50 ms
+        Assertions.assertEquals(-1, policy.getBackoffMillis(1, 951));
+    }
+
+    @Test
+    public void testNoneNeverRetries() {
+        Assertions.assertEquals(-1, RetryPolicy.NONE.getBackoffMillis(1, 0));
+    }
+
+    @Test
+    public void testInvalidPolicyIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RetryPolicy.exponentialBackoff(0, 100, 1000, 1000));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RetryPolicy.exponentialBackoff(3, 0, 1000, 1000));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RetryPolicy.exponentialBackoff(3, 100, 10, 1000));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RetryPolicy.exponentialBackoff(3, 100, 1000, -1));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi;
+
+import io.apicurio.common.apps.storage.exceptions.StorageTimeoutException;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.LongMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.query.MappedQueryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class StatementTimeoutsTest {
+
+    // Runs until cancelled
+    private static final String SLOW_QUERY = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000) a, SYSTEM_RANGE(1, 1000000) b " +
+            "WHERE a.X + b.X < 0";
+
+    private ScheduledExecutorService watchdog;
+
+    private Connection connection;
+
+    private Statement statement;
+
+    private RequestDeadline deadline;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        watchdog = Executors.newSingleThreadScheduledExecutor();
+        connection = DriverManager.getConnection("jdbc:h2:mem:statement-timeouts");
+        statement = connection.createStatement();
+        deadline = new RequestDeadline();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        statement.close();
+        connection.close();
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    public void testDefaultTimeoutIsRoundedUpToSeconds() throws Exception {
+        new StatementTimeouts(Duration.ofMillis(1500), () -> deadline, watchdog).start(statement, null, Map.of()).stop();
+        Assertions.assertEquals(2, statement.getQueryTimeout());
+    }
+
+    @Test
+    public void testStatementTimeoutOverridesDefault() throws Exception {
+        var timeouts = new StatementTimeouts(Duration.ofSeconds(60), () -> deadline, watchdog);
+        timeouts.start(statement, Duration.ofSeconds(5), Map.of()).stop();
+        Assertions.assertEquals(5, statement.getQueryTimeout());
+        // A cached statement must not keep the timeout of the previous query
+        timeouts.start(statement, Duration.ZERO, Map.of()).stop();
+        Assertions.assertEquals(0, statement.getQueryTimeout());
+    }
+
+    @Test
+    public void testNoTimeoutByDefault() throws Exception {
+        StatementTimeouts.NONE.start(statement, null, Map.of()).stop();
+        Assertions.assertEquals(0, statement.getQueryTimeout());
+    }
+
+    @Test
+    public void testExpiredDeadlineFailsBeforeExecution() {
+        deadline.setBudget(Duration.ofMillis(-1));
+        var timeouts = new StatementTimeouts(Duration.ZERO, () -> deadline, watchdog);
+        Assertions.assertThrows(StorageTimeoutException.class, () -> timeouts.start(statement, null, Map.of()));
+    }
+
+    @Test
+    public void testClearedDeadlineIsIgnored() throws Exception {
+        deadline.setBudget(Duration.ofMillis(-1));
+        deadline.clear();
+        var watch = new StatementTimeouts(Duration.ZERO, () -> deadline, watchdog).start(statement, null, Map.of());
+        watch.stop();
+        Assertions.assertFalse(watch.isCancelled());
+    }
+
+    @Test
+    public void testStatementIsCancelledAtDeadline() throws Exception {
+        deadline.setBudget(Duration.ofMillis(200));
+        var watch = new StatementTimeouts(Duration.ofSeconds(60), () -> deadline, watchdog).start(statement, null, Map.of());
+        var ex = Assertions.assertThrows(SQLException.class, () -> statement.executeQuery(SLOW_QUERY));
+        watch.stop();
+        Assertions.assertTrue(watch.isCancelled());
+        var timeoutEx = StatementTimeouts.timeoutException(ex, watch, Map.of());
+        Assertions.assertNotNull(timeoutEx);
+        Assertions.assertTrue(timeoutEx.getMessage().contains("deadline"));
+    }
+
+    @Test
+    public void testStoppedWatchDoesNotCancel() throws Exception {
+        deadline.setBudget(Duration.ofMillis(50));
+        var watch = new StatementTimeouts(Duration.ZERO, () -> deadline, watchdog).start(statement, null, Map.of());
+        watch.stop();
+        Thread.sleep(100);
+        Assertions.assertFalse(watch.isCancelled());
+        try (var rs = statement.executeQuery("SELECT 1")) {
+            Assertions.assertTrue(rs.next());
+        }
+    }
+
+    @Test
+    public void testWatchRunsUntilRowsAreRead() throws Exception {
+        deadline.setBudget(Duration.ofMillis(100));
+        var prepared = connection.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 3)");
+        var watch = new StatementTimeouts(Duration.ZERO, () -> deadline, watchdog).start(prepared, null, Map.of());
+        try (var rows = new MappedQueryImpl<>(null, null, null, prepared, new LongMapper(), Map.of(), watch).stream()) {
+            var iterator = rows.iterator();
+            Assertions.assertEquals(1L, iterator.next());
+            // Still fetching, so the statement is cancelled at the deadline
+            Thread.sleep(200);
+            Assertions.assertTrue(watch.isCancelled());
+        }
+    }
+
+    @Test
+    public void testWatchIsStoppedWhenRowsAreConsumed() throws Exception {
+        deadline.setBudget(Duration.ofMillis(100));
+        var prepared = connection.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 3)");
+        var watch = new StatementTimeouts(Duration.ZERO, () -> deadline, watchdog).start(prepared, null, Map.of());
+        try (var rows = new MappedQueryImpl<>(null, null, null, prepared, new LongMapper(), Map.of(), watch).stream()) {
+            Assertions.assertEquals(3, rows.count());
+            Thread.sleep(200);
+            Assertions.assertFalse(watch.isCancelled());
+        }
+    }
+
+    @Test
+    public void testWatchIsStoppedWhenQueryIsClosed() throws Exception {
+        deadline.setBudget(Duration.ofMillis(100));
+        var prepared = connection.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 3)");
+        var watch = new StatementTimeouts(Duration.ZERO, () -> deadline, watchdog).start(prepared, null, Map.of());
+        new MappedQueryImpl<>(null, null, null, prepared, new LongMapper(), Map.of(), watch).first();
+        Thread.sleep(200);
+        Assertions.assertFalse(watch.isCancelled());
+    }
+
+    @Test
+    public void testTimeoutExceptionIsRecognized() throws Exception {
+        var watch = StatementTimeouts.NONE.start(statement, null, Map.of());
+        Assertions.assertNotNull(StatementTimeouts.timeoutException(new SQLTimeoutException("Timed out"), watch, Map.of()));
+        Assertions.assertNotNull(StatementTimeouts.timeoutException(new SQLException("Cancelled", "57014"), watch, Map.of()));
+        Assertions.assertNull(StatementTimeouts.timeoutException(new SQLException("Syntax error", "42000"), watch, Map.of()));
+    }
+
+    @Test
+    public void testRemainingTime() {
+        Assertions.assertFalse(deadline.isSet());
+        deadline.setBudget(Duration.ofHours(1));
+        Assertions.assertTrue(deadline.isSet());
+        Assertions.assertTrue(deadline.remainingNanos() > Duration.ofMinutes(59).toNanos());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.mappers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.util.TypeLiteral;
+
+public class MapperLoaderTest {
+
+    @Test
+    public void testMapperIsResolvedByClass() {
+        var stringMapper = new StringMapper();
+        var longMapper = new LongMapper();
+        var loader = new MapperLoader();
+        loader.mappers = new TestInstance(List.of(stringMapper, longMapper));
+        loader.init(null);
+
+        Assertions.assertSame(stringMapper, loader.getMapper(String.class).orElseThrow());
+        Assertions.assertSame(longMapper, loader.getMapper(Long.class).orElseThrow());
+        Assertions.assertEquals(Optional.empty(), loader.getMapper(Object.class));
+    }
+
+    @Test
+    public void testMapperIsResolvedBeforeStartup() {
+        var stringMapper = new StringMapper();
+        var loader = new MapperLoader();
+        loader.mappers = new TestInstance(List.of(stringMapper));
+
+        Assertions.assertSame(stringMapper, loader.getMapper(String.class).orElseThrow());
+    }
+
+    @Test
+    public void testConflictIsDetectedAtStartup() {
+        var loader = new MapperLoader();
+        loader.mappers = new TestInstance(List.of(new StringMapper(), new OtherStringMapper()));
+
+        var ex = Assertions.assertThrows(IllegalStateException.class, () -> loader.init(null));
+        Assertions.assertTrue(ex.getMessage().contains(StringMapper.class.getName()));
+        Assertions.assertTrue(ex.getMessage().contains(OtherStringMapper.class.getName()));
+    }
+
+    @Test
+    public void testConflictIsDetectedOnLookup() {
+        var loader = new MapperLoader();
+        loader.mappers = new TestInstance(List.of(new AnyMapper(), new OtherAnyMapper()));
+        // The supported class is not the declared type, so it is not checked at startup
+        loader.init(null);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> loader.getMapper(Integer.class));
+    }
+
+    private static class OtherStringMapper implements RowMapper<String> {
+
+        @Override
+        public boolean supports(Class<?> klass) {
+            return String.class.equals(klass);
+        }
+
+        @Override
+        public String map(ResultSet rs) {
+            return null;
+        }
+    }
+
+    private static class AnyMapper implements RowMapper<Object> {
+
+        @Override
+        public boolean supports(Class<?> klass) {
+            return Number.class.isAssignableFrom(klass);
+        }
+
+        @Override
+        public Object map(ResultSet rs) {
+            return null;
+        }
+    }
+
+    private static class OtherAnyMapper extends AnyMapper {
+    }
+
+    private static class TestInstance implements Instance<RowMapper<?>> {
+
+        private final List<RowMapper<?>> mappers;
+
+        TestInstance(List<RowMapper<?>> mappers) {
+            this.mappers = mappers;
+        }
+
+        @Override
+        public Iterator<RowMapper<?>> iterator() {
+            return mappers.iterator();
+        }
+
+        @Override
+        public Instance<RowMapper<?>> select(Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends RowMapper<?>> Instance<U> select(Class<U> subtype, Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends RowMapper<?>> Instance<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isUnsatisfied() {
+            return mappers.isEmpty();
+        }
+
+        @Override
+        public boolean isAmbiguous() {
+            return mappers.size() > 1;
+        }
+
+        @Override
+        public void destroy(RowMapper<?> instance) {
+        }
+
+        @Override
+        public RowMapper<?> get() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.parse;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class DdlParserTest {
+
+    @Test
+    public void testStatementsCommentsAndEmptyLines() throws IOException {
+        String ddl = "-- A comment\n" +
+                "CREATE TABLE a (id INT);\n" +
+                "\n" +
+                "INSERT INTO a (id) VALUES (1);\n" +
+                "-- Another comment\n" +
+                "CREATE INDEX ia ON a (id)";
+
+        List<String> statements = new DdlParser().parse(new ByteArrayInputStream(ddl.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(List.of(
+                "CREATE TABLE a (id INT)",
+                "INSERT INTO a (id) VALUES (1)",
+                "CREATE INDEX ia ON a (id)"), statements);
+    }
+
+    @Test
+    public void testMultiLineStatement() throws IOException {
+        String ddl = "CREATE TABLE a (\n" +
+                "  id INT,\n" +
+                "  name VARCHAR(32)\n" +
+                ");\n" +
+                "CREATE TABLE b (id INT);\n";
+
+        List<String> statements = new DdlParser().parse(new ByteArrayInputStream(ddl.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(List.of(
+                "CREATE TABLE a (\n  id INT,\n  name VARCHAR(32)\n)",
+                "CREATE TABLE b (id INT)"), statements);
+    }
+
+    @Test
+    public void testDollarQuotedFunctionBody() throws IOException {
+        String function = "CREATE OR REPLACE FUNCTION f() RETURNS TRIGGER AS $$\n" +
+                "BEGIN\n" +
+                "\n" +
+                "-- Not a comment of the DDL\n" +
+                "  UPDATE a SET id = id + 1;\n" +
+                "  RETURN NEW;\n" +
+                "END;\n" +
+                "$$ LANGUAGE plpgsql";
+        String ddl = function + ";\n" +
+                "CREATE TABLE b (id INT);\n";
+
+        List<String> statements = new DdlParser().parse(new ByteArrayInputStream(ddl.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(List.of(function, "CREATE TABLE b (id INT)"), statements);
+    }
+
+    @Test
+    public void testNamedDollarQuoteTag() throws IOException {
+        String function = "CREATE OR REPLACE FUNCTION f() RETURNS TEXT AS $body$\n" +
+                "  SELECT $$nested; string$$;\n" +
+                "\n" +
+                "$body$ LANGUAGE sql";
+        String ddl = function + ";\n" +
+                "CREATE TABLE b (id INT);\n";
+
+        List<String> statements = new DdlParser().parse(new ByteArrayInputStream(ddl.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(List.of(function, "CREATE TABLE b (id INT)"), statements);
+    }
+
+    @Test
+    public void testDollarQuoteOpenedAndClosedOnOneLine() throws IOException {
+        String ddl = "COMMENT ON TABLE a IS $$a; table$$;\n" +
+                "CREATE TABLE b (id INT);\n";
+
+        List<String> statements = new DdlParser().parse(new ByteArrayInputStream(ddl.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(List.of("COMMENT ON TABLE a IS $$a; table$$", "CREATE TABLE b (id INT)"), statements);
+    }
+
+    @Test
+    public void testStatementsAreStreamed() {
+        String ddl = "CREATE TABLE a (id INT);\n" +
+                "CREATE TABLE b (id INT);\n";
+
+        var iterator = new DdlParser().statements(new ByteArrayInputStream(ddl.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertTrue(iterator.hasNext());
+        Assertions.assertEquals("CREATE TABLE a (id INT)", iterator.next());
+        Assertions.assertEquals("CREATE TABLE b (id INT)", iterator.next());
+        Assertions.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testReadErrorIsThrown() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Read failed");
+            }
+        };
+
+        var iterator = new DdlParser().statements(failing);
+        Assertions.assertThrows(UncheckedIOException.class, iterator::hasNext);
+        Assertions.assertThrows(IOException.class, () -> new DdlParser().parse(failing));
+    }
+
+    @Test
+    public void testIsQuery() {
+        Assertions.assertTrue(DdlParser.isQuery("SELECT 1"));
+        Assertions.assertTrue(DdlParser.isQuery("  select * FROM a"));
+        Assertions.assertTrue(DdlParser.isQuery("WITH x AS (SELECT 1) SELECT * FROM x"));
+        Assertions.assertTrue(DdlParser.isQuery("VALUES"));
+        Assertions.assertFalse(DdlParser.isQuery("SELECTED"));
+        Assertions.assertFalse(DdlParser.isQuery("CREATE TABLE a (id INT)"));
+        Assertions.assertFalse(DdlParser.isQuery("INSERT INTO a SELECT * FROM b"));
+    }
+}
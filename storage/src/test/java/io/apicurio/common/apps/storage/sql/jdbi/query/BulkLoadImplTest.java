@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.content.handle.ContentHandle;
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleSettings;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.ContentHandleMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.LongMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class BulkLoadImplTest {
+
+    private enum State {
+        ENABLED
+    }
+
+    /**
+     * Reads the whole text, in small chunks, as the driver reads it in chunks of its buffer size.
+     */
+    private static String copyText(List<Object[]> rows, int columns) {
+        var reader = new BulkLoadImpl.CopyTextReader<Object[]>(rows.iterator(),
+                (row, values) -> System.arraycopy(row, 0, values, 0, row.length), columns);
+        var rval = new StringBuilder();
+        var buffer = new char[3];
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) != -1) {
+            rval.append(buffer, 0, count);
+        }
+        return rval.toString();
+    }
+
+    @Test
+    public void testCopyTextOfValues() {
+        var text = copyText(List.of(
+                new Object[]{1L, 2, true, State.ENABLED},
+                new Object[]{-1L, null, false, null}), 4);
+        Assertions.assertEquals("1\t2\tt\tENABLED\n-1\t\\N\tf\t\\N\n", text);
+    }
+
+    @Test
+    public void testCopyTextEscapesStrings() {
+        var text = copyText(List.<Object[]>of(new Object[]{"a\\b\tc\nd\re", "\\N"}), 2);
+        Assertions.assertEquals("a\\\\b\\tc\\nd\\re\t\\\\N\n", text);
+    }
+
+    @Test
+    public void testCopyTextOfBytes() {
+        var text = copyText(List.<Object[]>of(
+                new Object[]{new byte[]{0, 15, 16, (byte) 0xff}, ContentHandle.create("A"), new byte[0]}), 3);
+        // The hex format of bytea, with the backslash escaped for the text format
+        Assertions.assertEquals("\\\\x000f10ff\t\\\\x41\t\\\\x\n", text);
+    }
+
+    @Test
+    public void testCopyTextOfTimestamps() {
+        var instant = Instant.parse("2023-05-01T10:15:30.123Z");
+        var expected = OffsetDateTime.ofInstant(instant, ZoneId.systemDefault()).toString();
+        var text = copyText(List.<Object[]>of(new Object[]{instant, Date.from(instant)}), 2);
+        Assertions.assertEquals(expected + "\t" + expected + "\n", text);
+    }
+
+    @Test
+    public void testCopyTextOfUnsupportedValue() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> copyText(List.<Object[]>of(new Object[]{1.5}), 1));
+    }
+
+    @Test
+    public void testCopyTextOfNoRows() {
+        Assertions.assertEquals("", copyText(List.of(), 1));
+    }
+
+    @Test
+    public void testInsertIsUsedWithoutCopy() throws SQLException, StorageException, IOException {
+        var instant = Instant.parse("2023-05-01T10:15:30Z");
+        try (var handle = new HandleImpl(DriverManager.getConnection("jdbc:h2:mem:bulk-load"), HandleSettings.builder().build())) {
+            handle.createUpdate("CREATE TABLE item (id BIGINT PRIMARY KEY, revision INT, enabled BOOLEAN, state VARCHAR(16), " +
+                    "created TIMESTAMP WITH TIME ZONE, content VARBINARY(16))").execute();
+            long count = handle.createBulkLoad("item", "id", "revision", "enabled", "state", "created", "content")
+                    .setBatchSize(3)
+                    .execute(IntStream.range(0, 10).boxed(), (i, values) -> {
+                        values[0] = (long) i;
+                        // Null is bound without a known type
+                        values[1] = i % 2 == 0 ? i : null;
+                        values[2] = i % 2 == 0;
+                        values[3] = State.ENABLED;
+                        values[4] = instant;
+                        values[5] = new byte[]{i.byteValue()};
+                    });
+            Assertions.assertEquals(10, count);
+            Assertions.assertEquals(10, handle.createQuery("SELECT COUNT(*) FROM item WHERE state = 'ENABLED' AND created = ?")
+                    .bind(0, instant)
+                    .map(new LongMapper())
+                    .one());
+            Assertions.assertArrayEquals(new long[]{0, 2, 4, 6, 8}, handle.createQuery("SELECT id FROM item WHERE enabled AND revision = id ORDER BY id")
+                    .map(new LongMapper())
+                    .longArray());
+            Assertions.assertArrayEquals(new byte[]{7}, handle.createQuery("SELECT content FROM item WHERE id = 7 AND revision IS NULL")
+                    .map(new ContentHandleMapper())
+                    .one()
+                    .bytes());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.common.apps.storage.sql.jdbi.query;
+
+import io.apicurio.common.apps.storage.exceptions.StorageException;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleImpl;
+import io.apicurio.common.apps.storage.sql.jdbi.HandleSettings;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.LongMapper;
+import io.apicurio.common.apps.storage.sql.jdbi.mappers.StringMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+public class UpdateImplTest {
+
+    private static final String INSERT = "INSERT INTO item (id, name) VALUES (?, ?)";
+
+    private HandleImpl handle;
+
+    @BeforeEach
+    public void setUp() throws SQLException, StorageException {
+        handle = new HandleImpl(DriverManager.getConnection("jdbc:h2:mem:update"), HandleSettings.builder().statementCacheSize(8).build());
+        handle.createUpdate("CREATE TABLE item (id BIGINT PRIMARY KEY, name VARCHAR(64) NOT NULL)").execute();
+    }
+
+    @AfterEach
+    public void tearDown() throws StorageException, IOException {
+        handle.createUpdate("DROP TABLE item").execute();
+        handle.close();
+    }
+
+    private long count() throws StorageException {
+        return handle.createQuery("SELECT COUNT(*) FROM item").map(new LongMapper()).one();
+    }
+
+    @Test
+    public void testBatchIsSentWhenFull() throws StorageException {
+        var update = handle.createUpdate(INSERT).setBatchSize(2);
+        update.bind(0, 1L).bind(1, "a").add();
+        Assertions.assertEquals(0, count());
+        update.bind(0, 2L).bind(1, "b").add();
+        Assertions.assertEquals(2, count());
+        update.bind(0, 3L).bind(1, "c").add();
+        Assertions.assertEquals(2, count());
+        // Counts of the rows sent when the batch was full are kept as well
+        Assertions.assertArrayEquals(new int[]{1, 1, 1}, update.executeBatch());
+        Assertions.assertEquals(3, count());
+    }
+
+    @Test
+    public void testUpdateCanBeReusedAfterBatch() throws StorageException {
+        var update = handle.createUpdate(INSERT);
+        update.bind(0, 1L).bind(1, "a").add();
+        Assertions.assertArrayEquals(new int[]{1}, update.executeBatch());
+        update.bind(0, 2L).bind(1, "b").add();
+        Assertions.assertArrayEquals(new int[]{1}, update.executeBatch());
+        Assertions.assertArrayEquals(new int[0], update.executeBatch());
+        Assertions.assertEquals(2, count());
+    }
+
+    @Test
+    public void testRowsOfBatchHaveTheirOwnParameters() throws StorageException {
+        var update = handle.createUpdate(INSERT);
+        for (long i = 0; i < 5; i++) {
+            update.bind(0, i).bind(1, "item-" + i).add();
+        }
+        update.executeBatch();
+        Assertions.assertEquals("item-3", handle.createQuery("SELECT name FROM item WHERE id = 3").map(new StringMapper()).one());
+    }
+
+    @Test
+    public void testParametersNotAddedToBatchAreRejected() throws StorageException {
+        var update = handle.createUpdate(INSERT);
+        update.bind(0, 1L).bind(1, "a").add();
+        update.bind(0, 2L).bind(1, "b");
+        Assertions.assertThrows(StorageException.class, update::executeBatch);
+    }
+
+    @Test
+    public void testFailedBatchIsDiscarded() throws StorageException {
+        handle.createUpdate(INSERT).bind(0, 1L).bind(1, "a").execute();
+        var update = handle.createUpdate(INSERT);
+        update.bind(0, 2L).bind(1, "b").add();
+        update.bind(0, 1L).bind(1, "duplicate").add();
+        Assertions.assertThrows(StorageException.class, update::executeBatch);
+        // The rows of the failed batch are not sent again
+        update.bind(0, 3L).bind(1, "c").add();
+        Assertions.assertArrayEquals(new int[]{1}, update.executeBatch());
+        Assertions.assertEquals(1, handle.createQuery("SELECT COUNT(*) FROM item WHERE id = 3").map(new LongMapper()).one());
+    }
+
+    @Test
+    public void testInvalidBatchSizeIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> handle.createUpdate(INSERT).setBatchSize(0));
+    }
+}